@@ -0,0 +1,45 @@
+package com.example.colegiosapp.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Contador auxiliar con el pico de heap de cada iteración: al empezar se reinician
+ * los picos de los pools de heap y tras cada operación se suma el máximo observado.
+ * Aparece en los resultados como {@code peakHeapMb}. La tasa de asignación se obtiene
+ * con el perfilador de JMH ({@code -prof gc}).
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class HeapUsage {
+
+    public double peakHeapMb;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        peakHeapMb = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** Actualiza el pico con lo observado por los pools desde el último reinicio. */
+    void sample() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        peakHeapMb = Math.max(peakHeapMb, peak / (1024.0 * 1024.0));
+    }
+}
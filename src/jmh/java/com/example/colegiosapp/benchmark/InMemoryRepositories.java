@@ -0,0 +1,59 @@
+package com.example.colegiosapp.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.CitaStatusCountRepository;
+import com.example.colegiosapp.repository.InstitucionRepository;
+
+/**
+ * Repositorios respaldados por un {@link SyntheticDataset}. Solo implementan las
+ * consultas que usan los reportes; cualquier otro método lanza
+ * {@link UnsupportedOperationException} para que un benchmark no mida por error
+ * una ruta sin datos.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    static CitaRepository citas(SyntheticDataset data) {
+        return (CitaRepository) Proxy.newProxyInstance(CitaRepository.class.getClassLoader(),
+                new Class<?>[]{CitaRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "streamForReport", "streamForExport" ->
+                            data.stream((Long) args[0], (EstadoCita) args[1], (LocalDate) args[2], (LocalDate) args[3]);
+                    case "findByInstitucionId" -> data.citas((Long) args[0]);
+                    case "toString" -> "InMemoryCitaRepository";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static CitaStatusCountRepository statusCounts(SyntheticDataset data) {
+        return (CitaStatusCountRepository) Proxy.newProxyInstance(CitaStatusCountRepository.class.getClassLoader(),
+                new Class<?>[]{CitaStatusCountRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findCountsByInstitucion" -> data.counts((Long) args[0]);
+                    case "findAllCounts" -> data.counts(null);
+                    case "toString" -> "InMemoryCitaStatusCountRepository";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static InstitucionRepository instituciones(SyntheticDataset data) {
+        return (InstitucionRepository) Proxy.newProxyInstance(InstitucionRepository.class.getClassLoader(),
+                new Class<?>[]{InstitucionRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> data.instituciones();
+                    case "findById" -> Optional.ofNullable(data.institucion((Long) args[0]));
+                    case "toString" -> "InMemoryInstitucionRepository";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.colegiosapp.benchmark;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.colegiosapp.report.CsvReportStrategy;
+import com.example.colegiosapp.report.ExcelReportStrategy;
+import com.example.colegiosapp.report.NdjsonReportStrategy;
+import com.example.colegiosapp.report.PdfReportStrategy;
+import com.example.colegiosapp.report.ReportFilter;
+import com.example.colegiosapp.report.ReportProgress;
+import com.example.colegiosapp.report.ReportSectionLoader;
+import com.example.colegiosapp.report.ReportStrategy;
+import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.InstitucionRepository;
+import com.example.colegiosapp.util.ReportGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Mide la generación de reportes de todas las instituciones sobre un
+ * {@link SyntheticDataset}, sin base de datos: el costo medido es el de armar y
+ * escribir el documento. Los reportes se escriben en un flujo que solo cuenta bytes.
+ *
+ * <p>Por defecto usa tamaños que terminan en minutos; para volúmenes mayores (hasta
+ * 5 millones de citas) se pasan por parámetro, por ejemplo
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="ReportBenchmark -p rows=1000000 -p format=csv -prof gc"}.
+ * {@code sectionThreads} compara el modo secuencial con el paralelo de Excel y PDF;
+ * en los demás formatos no tiene efecto.
+ * Los formatos {@code legacy-excel} y {@code legacy-pdf} usan los métodos en memoria de
+ * {@link ReportGenerator} como referencia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ReportBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"50"})
+    public int institutions;
+
+    /** Exponente de Zipf del reparto de citas entre instituciones (0 = uniforme). */
+    @Param({"0.0", "1.0"})
+    public double institutionSkew;
+
+    /** Exponente de Zipf del reparto de citas entre estados (0 = uniforme). */
+    @Param({"1.0"})
+    public double estadoSkew;
+
+    @Param({"excel", "pdf", "csv", "ndjson"})
+    public String format;
+
+    /**
+     * Hilos de {@link ReportSectionLoader} para Excel y PDF (1 = secuencial). Sin base de
+     * datos no hay latencia que ocultar; el modo paralelo se mide por su heap y su costo
+     * de coordinación.
+     */
+    @Param({"1", "4"})
+    public int sectionThreads;
+
+    private ReportGenerator reportGenerator;
+    private ReportSectionLoader sectionLoader;
+    private ReportStrategy strategy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDataset data = new SyntheticDataset(rows, institutions, institutionSkew, estadoSkew);
+        CitaRepository citas = InMemoryRepositories.citas(data);
+        InstitucionRepository instituciones = InMemoryRepositories.instituciones(data);
+        reportGenerator = new ReportGenerator(citas, instituciones, InMemoryRepositories.statusCounts(data));
+        sectionLoader = new ReportSectionLoader(sectionThreads > 1, sectionThreads, false, null,
+                new NoTransactionManager());
+        strategy = switch (format) {
+            case "excel" -> new ExcelReportStrategy(citas, instituciones, reportGenerator, sectionLoader);
+            case "pdf" -> new PdfReportStrategy(citas, instituciones, reportGenerator, sectionLoader);
+            case "csv" -> new CsvReportStrategy(citas);
+            case "ndjson" -> new NdjsonReportStrategy(citas, new ObjectMapper());
+            default -> null;
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sectionLoader.shutdown();
+    }
+
+    @Benchmark
+    public long report(HeapUsage heap) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        switch (format) {
+            case "legacy-excel" -> {
+                try (Workbook workbook = reportGenerator.generateCitasWorkbook(null)) {
+                    workbook.write(out);
+                }
+            }
+            case "legacy-pdf" -> out.write(reportGenerator.generateCitasPdf(null));
+            default -> strategy.writeReport(null, ReportFilter.none(), out, ReportProgress.NONE);
+        }
+        heap.sample();
+        return out.count;
+    }
+
+    /** Descarta lo escrito y solo lleva la cuenta de bytes. */
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
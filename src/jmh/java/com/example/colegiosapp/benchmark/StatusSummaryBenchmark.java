@@ -0,0 +1,69 @@
+package com.example.colegiosapp.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.colegiosapp.util.ReportGenerator;
+
+/**
+ * Mide el armado de los resúmenes por estado a partir de los conteos por estado. Con
+ * el dataset sintético no hay consulta real, así que refleja el costo en Java, que
+ * depende del número de instituciones y no del de citas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusSummaryBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"50", "500"})
+    public int institutions;
+
+    @Param({"1.0"})
+    public double institutionSkew;
+
+    @Param({"1.0"})
+    public double estadoSkew;
+
+    private ReportGenerator reportGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticDataset data = new SyntheticDataset(rows, institutions, institutionSkew, estadoSkew);
+        reportGenerator = new ReportGenerator(InMemoryRepositories.citas(data), InMemoryRepositories.instituciones(data),
+                InMemoryRepositories.statusCounts(data));
+    }
+
+    @Benchmark
+    public Map<String, Long> statusSummary() {
+        return reportGenerator.generateCitaStatusSummary(1L);
+    }
+
+    @Benchmark
+    public Map<String, Long> statusSummaryAll() {
+        return reportGenerator.generateCitaStatusSummary(null);
+    }
+
+    @Benchmark
+    public Map<Long, Map<String, Long>> statusSummaryByInstitucion() {
+        return reportGenerator.generateCitaStatusSummaryByInstitucion();
+    }
+}
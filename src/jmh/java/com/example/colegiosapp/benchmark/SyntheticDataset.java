@@ -0,0 +1,222 @@
+package com.example.colegiosapp.benchmark;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.repository.CitaEstadoCount;
+import com.example.colegiosapp.repository.CitaExportRow;
+import com.example.colegiosapp.util.ReportGenerator;
+
+/**
+ * Conjunto de citas sintético y determinista para los benchmarks. Solo se guardan
+ * los conteos por institución y estado; las filas se generan al recorrerlas a partir
+ * de una semilla, así que 5 millones de citas no ocupan memoria y el heap medido es
+ * el del reporte, no el de los datos.
+ *
+ * <p>El reparto entre instituciones y entre estados sigue una ley de Zipf: con
+ * {@code skew = 0} es uniforme y a mayor valor se concentra en las primeras.
+ */
+public final class SyntheticDataset {
+
+    private static final LocalDate BASE_DATE = LocalDate.of(2025, 1, 6);
+    private static final long SEED = 0x5EEDL;
+    private static final EstadoCita[] ESTADOS = EstadoCita.values();
+
+    private final List<Institucion> instituciones;
+    /** Cantidad de citas e id de la primera cita de cada institución. */
+    private final int[] rowsPerInstitucion;
+    private final long[] firstId;
+    private final double[] estadoCumulative;
+    private final Map<Long, Map<EstadoCita, Long>> summaries = new LinkedHashMap<>();
+
+    public SyntheticDataset(int rows, int institutions, double institutionSkew, double estadoSkew) {
+        this.rowsPerInstitucion = distribute(rows, zipfWeights(institutions, institutionSkew));
+        this.firstId = new long[institutions];
+        this.estadoCumulative = cumulative(zipfWeights(ESTADOS.length, estadoSkew));
+
+        List<Institucion> list = new ArrayList<>(institutions);
+        long nextId = 1;
+        for (int i = 0; i < institutions; i++) {
+            Institucion inst = new Institucion();
+            inst.setId((long) i + 1);
+            inst.setNombre("Colegio sintético " + (i + 1));
+            inst.setLocalidad("Localidad " + (i % 20 + 1));
+            list.add(inst);
+            firstId[i] = nextId;
+            nextId += rowsPerInstitucion[i];
+        }
+        this.instituciones = Collections.unmodifiableList(list);
+
+        // Los conteos por estado se obtienen recorriendo una vez las filas generadas
+        for (int i = 0; i < institutions; i++) {
+            Map<EstadoCita, Long> summary = new LinkedHashMap<>();
+            for (EstadoCita estado : ESTADOS) {
+                summary.put(estado, 0L);
+            }
+            rows(i).forEach(c -> summary.merge(c.getEstado(), 1L, Long::sum));
+            summaries.put(list.get(i).getId(), summary);
+        }
+    }
+
+    public List<Institucion> instituciones() {
+        return instituciones;
+    }
+
+    public Institucion institucion(Long id) {
+        int index = indexOf(id);
+        return index >= 0 ? instituciones.get(index) : null;
+    }
+
+    /** Filas de una institución (o de todas si {@code institucionId} es null) con los filtros del reporte. */
+    public Stream<CitaExportRow> stream(Long institucionId, EstadoCita estado, LocalDate desde, LocalDate hasta) {
+        Stream<CitaExportRow> rows;
+        if (institucionId == null) {
+            rows = IntStream.range(0, instituciones.size()).boxed().flatMap(this::rows);
+        } else {
+            int index = indexOf(institucionId);
+            rows = index >= 0 ? rows(index) : Stream.empty();
+        }
+        return rows.filter(c -> (estado == null || estado == c.getEstado())
+                && (desde == null || !c.getFechaCita().isBefore(desde))
+                && (hasta == null || !c.getFechaCita().isAfter(hasta)));
+    }
+
+    /** Entidades Cita de una institución, para los métodos heredados de {@link ReportGenerator}. */
+    public List<Cita> citas(Long institucionId) {
+        Institucion inst = institucion(institucionId);
+        return stream(institucionId, null, null, null).map(r -> {
+            Cita c = new Cita();
+            c.setId(r.getId());
+            c.setInstitucion(inst);
+            c.setFechaCita(r.getFechaCita());
+            c.setHoraCita(r.getHoraCita());
+            c.setNombreAgenda(r.getNombreAgenda());
+            c.setCorreoAgenda(r.getCorreoAgenda());
+            c.setTelefonoAgenda(r.getTelefonoAgenda());
+            c.setCantidadCitas(r.getCantidadCitas());
+            c.setEstado(r.getEstado());
+            return c;
+        }).toList();
+    }
+
+    /** Filas de {@code cita_status_counts} de la institución, o de todas si es null. */
+    public List<CitaEstadoCount> counts(Long institucionId) {
+        List<CitaEstadoCount> result = new ArrayList<>();
+        summaries.forEach((id, summary) -> {
+            if (institucionId == null || institucionId.equals(id)) {
+                summary.forEach((estado, total) -> {
+                    if (total > 0) {
+                        result.add(new Count(id, estado, total));
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    private Stream<CitaExportRow> rows(int index) {
+        long institucionId = instituciones.get(index).getId();
+        long first = firstId[index];
+        SplittableRandom random = new SplittableRandom(SEED ^ institucionId);
+        return IntStream.range(0, rowsPerInstitucion[index])
+                .mapToObj(n -> row(first + n, institucionId, random));
+    }
+
+    private CitaExportRow row(long id, long institucionId, SplittableRandom random) {
+        EstadoCita estado = ESTADOS[pick(estadoCumulative, random.nextDouble())];
+        LocalDate fecha = BASE_DATE.plusDays(random.nextInt(365));
+        LocalTime hora = LocalTime.of(7 + random.nextInt(10), random.nextBoolean() ? 0 : 30);
+        return new Row(id, institucionId, fecha, hora, "Acudiente " + id, "acudiente" + id + "@example.com",
+                String.valueOf(3_000_000_000L + id), 1 + random.nextInt(3), estado);
+    }
+
+    private int indexOf(Long institucionId) {
+        if (institucionId == null || institucionId < 1 || institucionId > instituciones.size()) {
+            return -1;
+        }
+        return (int) (institucionId - 1);
+    }
+
+    private static double[] zipfWeights(int n, double skew) {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = 1.0 / Math.pow(i + 1, skew);
+        }
+        return weights;
+    }
+
+    /** Reparte {@code total} según los pesos, asignando los restos a los mayores decimales. */
+    private static int[] distribute(int total, double[] weights) {
+        double sum = 0;
+        for (double w : weights) sum += w;
+        int[] counts = new int[weights.length];
+        double[] remainders = new double[weights.length];
+        int assigned = 0;
+        for (int i = 0; i < weights.length; i++) {
+            double exact = total * weights[i] / sum;
+            counts[i] = (int) exact;
+            remainders[i] = exact - counts[i];
+            assigned += counts[i];
+        }
+        while (assigned < total) {
+            int best = 0;
+            for (int i = 1; i < remainders.length; i++) {
+                if (remainders[i] > remainders[best]) best = i;
+            }
+            counts[best]++;
+            remainders[best] = -1;
+            assigned++;
+        }
+        return counts;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double sum = 0;
+        for (double w : weights) sum += w;
+        double[] result = new double[weights.length];
+        double acc = 0;
+        for (int i = 0; i < weights.length; i++) {
+            acc += weights[i] / sum;
+            result[i] = acc;
+        }
+        return result;
+    }
+
+    private static int pick(double[] cumulative, double value) {
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (value < cumulative[i]) return i;
+        }
+        return cumulative.length - 1;
+    }
+
+    private record Row(Long id, Long institucionId, LocalDate fechaCita, LocalTime horaCita, String nombreAgenda,
+                    String correoAgenda, String telefonoAgenda, Integer cantidadCitas, EstadoCita estado)
+            implements CitaExportRow {
+        @Override public Long getId() { return id; }
+        @Override public Long getInstitucionId() { return institucionId; }
+        @Override public LocalDate getFechaCita() { return fechaCita; }
+        @Override public LocalTime getHoraCita() { return horaCita; }
+        @Override public String getNombreAgenda() { return nombreAgenda; }
+        @Override public String getCorreoAgenda() { return correoAgenda; }
+        @Override public String getTelefonoAgenda() { return telefonoAgenda; }
+        @Override public Integer getCantidadCitas() { return cantidadCitas; }
+        @Override public EstadoCita getEstado() { return estado; }
+    }
+
+    private record Count(Long institucionId, EstadoCita estado, Long total) implements CitaEstadoCount {
+        @Override public Long getInstitucionId() { return institucionId; }
+        @Override public EstadoCita getEstado() { return estado; }
+        @Override public Long getTotal() { return total; }
+    }
+}
@@ -2,12 +2,16 @@ package com.example.colegiosapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.session.SessionAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main entry point for the Colegios Spring Boot application.  This class
  * bootstraps the Spring context and starts the embedded web server.
  */
-@SpringBootApplication
+// Las sesiones en base de datos solo se activan con JdbcSessionConfig (sesiones.jdbc.enabled)
+@SpringBootApplication(exclude = SessionAutoConfiguration.class)
+@EnableScheduling
 public class ColegiosAppApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,125 @@
+package com.example.colegiosapp.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.colegiosapp.entity.EstadoCita;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Completa al arrancar las columnas nuevas de {@code citas} a partir de las antiguas,
+ * después de que Hibernate las agregue y antes de que se reconcilie la ocupación
+ * de las franjas:
+ * <ul>
+ *   <li>{@code estado_codigo}: código numérico del estado guardado como texto en {@code estado}.</li>
+ *   <li>{@code id_usuario}: tutor cuyo correo coincide con {@code correo_agenda}.</li>
+ * </ul>
+ *
+ * <p>Cada paso recorre la tabla por rangos de {@code citas.migracion.lote} ids, un
+ * UPDATE con su propio commit por rango, para no bloquear la tabla completa. Solo toca
+ * filas pendientes, así que puede interrumpirse y volver a ejecutarse. Las columnas
+ * antiguas se conservan.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class CitaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(CitaMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int lote;
+
+    public CitaMigration(JdbcTemplate jdbcTemplate,
+                        @Value("${citas.migracion.lote:5000}") int lote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lote = Math.max(1, lote);
+    }
+
+    @PostConstruct
+    public void migrar() {
+        migrarEstado();
+        asignarUsuario();
+    }
+
+    private void migrarEstado() {
+        String pendientes = "estado_codigo IS NULL AND estado IS NOT NULL";
+        StringBuilder caso = new StringBuilder("CASE estado");
+        List<Object> args = new ArrayList<>();
+        for (EstadoCita e : EstadoCita.values()) {
+            caso.append(" WHEN ? THEN ?");
+            args.add(e.getEtiqueta());
+            args.add(e.getCodigo());
+        }
+        for (EstadoCita e : EstadoCita.values()) {
+            args.add(e.getEtiqueta());
+        }
+        String conocidas = String.join(", ", Collections.nCopies(EstadoCita.values().length, "?"));
+        String sql = "UPDATE citas SET estado_codigo = " + caso + " END WHERE estado IN (" + conocidas + ")";
+
+        int migradas;
+        try {
+            migradas = porLotes(pendientes, sql, args);
+        } catch (BadSqlGrammarException e) {
+            // Instalación nueva: la tabla nunca tuvo la columna de texto
+            return;
+        }
+        if (migradas > 0) {
+            log.info("Estado de {} citas migrado a estado_codigo", migradas);
+        }
+        int sinCodigo = contar(pendientes);
+        if (sinCodigo > 0) {
+            log.warn("{} citas tienen un estado de texto desconocido y quedaron sin estado_codigo", sinCodigo);
+        }
+    }
+
+    private void asignarUsuario() {
+        String pendientes = "id_usuario IS NULL AND correo_agenda IS NOT NULL";
+        String sql = "UPDATE citas SET id_usuario = "
+                + "(SELECT u.id_usuario FROM usuario u WHERE u.correo = citas.correo_agenda) "
+                + "WHERE correo_agenda IN (SELECT correo FROM usuario)";
+        int asignadas = porLotes(pendientes, sql, List.of());
+        if (asignadas > 0) {
+            log.info("{} citas asociadas a su tutor por correo_agenda ({} sin usuario con ese correo)",
+                    asignadas, contar(pendientes));
+        }
+    }
+
+    /**
+     * Ejecuta {@code update} (sin WHERE de rango) sobre las filas que cumplen
+     * {@code pendientes}, por rangos consecutivos de id_cita.
+     * @return filas actualizadas.
+     */
+    private int porLotes(String pendientes, String update, List<Object> args) {
+        Long[] rango = jdbcTemplate.queryForObject("SELECT MIN(id_cita), MAX(id_cita) FROM citas WHERE " + pendientes,
+                (rs, i) -> new Long[] { rs.getObject(1, Long.class), rs.getObject(2, Long.class) });
+        if (rango == null || rango[0] == null) {
+            return 0;
+        }
+        String sql = update + " AND id_cita BETWEEN ? AND ? AND " + pendientes;
+        long inicio = System.currentTimeMillis();
+        int actualizadas = 0;
+        for (long desde = rango[0]; desde <= rango[1]; desde += lote) {
+            List<Object> conRango = new ArrayList<>(args);
+            conRango.add(desde);
+            conRango.add(Math.min(desde + lote - 1, rango[1]));
+            actualizadas += jdbcTemplate.update(sql, conRango.toArray());
+        }
+        log.debug("{} filas actualizadas en {} ms: {}", actualizadas, System.currentTimeMillis() - inicio, update);
+        return actualizadas;
+    }
+
+    private int contar(String pendientes) {
+        Integer n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM citas WHERE " + pendientes, Integer.class);
+        return n != null ? n : 0;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.colegiosapp.config;
 
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import com.example.colegiosapp.entity.Rol;
@@ -8,8 +10,10 @@ import com.example.colegiosapp.repository.RolRepository;
 
 /**
  * Inicializa registros de base de datos esenciales, como roles, al iniciar la aplicación.
+ * Corre antes que los demás inicializadores, que dependen de los roles.
  */
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
 public class DataInitializer implements CommandLineRunner {
     private final RolRepository rolRepository;
 
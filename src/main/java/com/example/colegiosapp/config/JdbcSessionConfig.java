@@ -0,0 +1,92 @@
+package com.example.colegiosapp.config;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.session.JdbcSessionDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.session.JdbcSessionProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
+import org.springframework.util.ClassUtils;
+
+import com.example.colegiosapp.session.CompactSessionSerializer;
+import com.example.colegiosapp.session.DirtyTrackingSessionRepository;
+import com.example.colegiosapp.session.SessionSweeper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sesiones compartidas en la base de datos ({@code sesiones.jdbc.enabled}). El login
+ * sobrevive a los despliegues y cualquier instancia atiende cualquier petición, sin
+ * sesiones fijas en el balanceador. Sin esta opción las sesiones siguen en la memoria
+ * de Tomcat.
+ *
+ * <p>Las tablas {@code SPRING_SESSION} se crean al arrancar si no existen. Los atributos
+ * se guardan comprimidos ({@link CompactSessionSerializer}), solo se escriben las
+ * sesiones que cambiaron ({@link DirtyTrackingSessionRepository}) y las vencidas se
+ * borran por lotes ({@link SessionSweeper}) en lugar de la limpieza de Spring Session.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sesiones.jdbc.enabled", havingValue = "true")
+@EnableJdbcHttpSession(cleanupCron = Scheduled.CRON_DISABLED)
+public class JdbcSessionConfig {
+
+    @Bean
+    public JdbcSessionDataSourceScriptDatabaseInitializer jdbcSessionSchemaInitializer(DataSource dataSource) {
+        JdbcSessionProperties properties = new JdbcSessionProperties();
+        properties.setInitializeSchema(DatabaseInitializationMode.ALWAYS);
+        return new JdbcSessionDataSourceScriptDatabaseInitializer(dataSource, properties);
+    }
+
+    @Bean
+    public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> jdbcSessionTimeout(
+            @Value("${server.servlet.session.timeout:PT30M}") Duration timeout) {
+        return repository -> repository.setDefaultMaxInactiveInterval(timeout);
+    }
+
+    /** Nombre fijo: Spring Session lo usa para convertir los atributos a bytes y de vuelta. */
+    @Bean
+    public ConversionService springSessionConversionService(
+            @Value("${sesiones.jdbc.compresion.umbral:512}") int umbral) {
+        CompactSessionSerializer serializer = new CompactSessionSerializer(ClassUtils.getDefaultClassLoader(), umbral);
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, serializer::serializar);
+        conversionService.addConverter(byte[].class, Object.class, serializer::deserializar);
+        return conversionService;
+    }
+
+    /** Repositorio que usa el filtro de sesiones; delega en el de JDBC. */
+    @Bean
+    @Primary
+    public DirtyTrackingSessionRepository<?> dirtyTrackingSessionRepository(
+            JdbcIndexedSessionRepository sessionRepository,
+            @Value("${sesiones.jdbc.acceso.intervalo:PT1M}") Duration intervaloAcceso) {
+        return tracking(sessionRepository, intervaloAcceso);
+    }
+
+    @Bean
+    public SessionSweeper sessionSweeper(JdbcTemplate jdbcTemplate,
+                                        @Value("${sesiones.jdbc.limpieza.lote:1000}") int lote,
+                                        MeterRegistry meterRegistry) {
+        return new SessionSweeper(jdbcTemplate, JdbcIndexedSessionRepository.DEFAULT_TABLE_NAME, lote, meterRegistry);
+    }
+
+    private static <S extends Session> DirtyTrackingSessionRepository<S> tracking(SessionRepository<S> repository,
+                                                                                 Duration intervaloAcceso) {
+        return new DirtyTrackingSessionRepository<>(repository, intervaloAcceso);
+    }
+}
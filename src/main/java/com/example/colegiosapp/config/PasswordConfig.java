@@ -1,10 +1,18 @@
 package com.example.colegiosapp.config;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import com.example.colegiosapp.security.BoundedPasswordEncoder;
+import com.example.colegiosapp.security.TtlUserCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Define beans relacionados con el cifrado de contraseñas. Separar el
  * PasswordEncoder en esta clase evita una dependencia circular entre
@@ -13,8 +21,25 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class PasswordConfig {
 
+    /**
+     * BCrypt con costo configurable, ejecutado en un pool acotado. Con 0 hilos se usa
+     * la mitad de los núcleos, para dejar el resto a las demás peticiones.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(@Value("${seguridad.bcrypt.cost:10}") int cost,
+                                        @Value("${seguridad.hash.threads:0}") int threads,
+                                        @Value("${seguridad.hash.queue:64}") int queue,
+                                        @Value("${seguridad.hash.timeout:PT5S}") Duration timeout,
+                                        MeterRegistry registry) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(cost, poolSize, queue, timeout, registry);
+    }
+
+    /** Caché de corta duración de los usuarios que inician sesión. */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public UserCache userCache(@Value("${seguridad.usuarios.cache.ttl:PT2M}") Duration ttl,
+                            @Value("${seguridad.usuarios.cache.max-entries:10000}") int maxEntries,
+                            MeterRegistry registry) {
+        return new TtlUserCache(ttl, maxEntries, registry);
     }
 }
@@ -0,0 +1,58 @@
+package com.example.colegiosapp.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.example.colegiosapp.datasource.QueryCountingDataSource;
+import com.example.colegiosapp.datasource.QueryStatsEndpoint;
+import com.example.colegiosapp.datasource.QueryStatsFilter;
+import com.example.colegiosapp.datasource.QueryStatsRegistry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Conteo de sentencias SQL y filas por petición ({@code sql.estadisticas.enabled}).
+ * El filtro va antes que Spring Security para incluir las consultas del login.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sql.estadisticas.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryStatsConfig {
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public QueryStatsRegistry queryStatsRegistry(MeterRegistry meterRegistry,
+                                                @Value("${sql.n-mas-uno.umbral:10}") int umbral) {
+        return new QueryStatsRegistry(meterRegistry, umbral);
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryStatsFilter> queryStatsFilter(QueryStatsRegistry registry) {
+        FilterRegistrationBean<QueryStatsFilter> registration = new FilterRegistrationBean<>(new QueryStatsFilter(registry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public QueryStatsEndpoint queryStatsEndpoint(QueryStatsRegistry registry) {
+        return new QueryStatsEndpoint(registry);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.colegiosapp.config;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import com.example.colegiosapp.datasource.ReadYourWritesFilter;
+import com.example.colegiosapp.datasource.ReplicaLagMonitor;
+import com.example.colegiosapp.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Réplicas de lectura ({@code basedatos.replicas.enabled}). Reemplaza el DataSource de
+ * Spring Boot por {@link ReplicaRoutingDataSource}: la primaria sigue configurándose con
+ * {@code spring.datasource.*} y cada URL de {@code basedatos.replicas.urls} tiene su
+ * propio pool de Hikari.
+ *
+ * <p>Van a las réplicas las transacciones de solo lectura: los reportes y sus secciones,
+ * los métodos de lectura de los repositorios y las consultas marcadas
+ * {@code @Transactional(readOnly = true)}, como la lista de citas del tutor. Las
+ * peticiones GET no deben escribir después de leer, porque la conexión de la petición
+ * ({@code spring.jpa.open-in-view}) puede ser la de una réplica.
+ */
+@Configuration
+@ConditionalOnProperty(name = "basedatos.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties,
+                                Environment environment,
+                                @Value("${basedatos.replicas.urls}") List<String> urls,
+                                @Value("${basedatos.replicas.username:${spring.datasource.username:}}") String username,
+                                @Value("${basedatos.replicas.password:${spring.datasource.password:}}") String password,
+                                @Value("${basedatos.replicas.pool:10}") int pool,
+                                MeterRegistry meterRegistry) {
+        HikariDataSource primaria = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primaria));
+        primaria.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String nombre = "replica-" + (replicas.size() + 1);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName(nombre);
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(pool);
+            replica.setReadOnly(true);
+            // Sin esperar a la réplica al arrancar: el monitor la activa cuando responde
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(new ReplicaRoutingDataSource.Replica(nombre, replica));
+        }
+        if (replicas.isEmpty()) {
+            throw new IllegalStateException("basedatos.replicas.enabled=true requiere al menos una URL en basedatos.replicas.urls");
+        }
+        return new ReplicaRoutingDataSource(primaria, replicas, meterRegistry);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSource dataSource,
+                                            @Value("${basedatos.replicas.retraso-maximo:PT5S}") Duration retrasoMaximo,
+                                            @Value("${basedatos.replicas.latido:PT1S}") Duration latido,
+                                            MeterRegistry meterRegistry) throws SQLException {
+        // El bean puede llegar envuelto (conteo de sentencias, límite de conexiones)
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(dataSource.unwrap(ReplicaRoutingDataSource.class),
+                retrasoMaximo, meterRegistry);
+        monitor.iniciar(latido);
+        return monitor;
+    }
+
+    /**
+     * La marca de lectura en la primaria dura el retraso máximo admitido más dos latidos:
+     * pasado ese tiempo, las réplicas que reciben lecturas ya tienen lo escrito.
+     */
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${basedatos.replicas.retraso-maximo:PT5S}") Duration retrasoMaximo,
+            @Value("${basedatos.replicas.latido:PT1S}") Duration latido) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(retrasoMaximo.plus(latido.multipliedBy(2))));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
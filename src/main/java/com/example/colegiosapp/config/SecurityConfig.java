@@ -4,14 +4,19 @@ import com.example.colegiosapp.service.UsuarioService;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.boot.autoconfigure.security.servlet.PathRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
@@ -24,20 +29,52 @@ public class SecurityConfig {
 
     private final UsuarioService usuarioService;
     private final PasswordEncoder passwordEncoder;
+    private final UserCache userCache;
 
-    public SecurityConfig(UsuarioService usuarioService, PasswordEncoder passwordEncoder) {
+    public SecurityConfig(UsuarioService usuarioService, PasswordEncoder passwordEncoder, UserCache userCache) {
         this.usuarioService = usuarioService;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
     }
 
+    /**
+     * Proveedor con caché de usuarios y re-cifrado transparente: si el hash guardado
+     * tiene un costo menor al configurado, se regenera tras un login correcto. Es el
+     * único proveedor, así un login fallido no se verifica dos veces.
+     */
+    @Bean
+    public AuthenticationManager authenticationManager() {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(usuarioService);
+        provider.setPasswordEncoder(passwordEncoder);
+        provider.setUserDetailsPasswordService(usuarioService);
+        provider.setUserCache(userCache);
+        return new ProviderManager(provider);
+    }
+
+    /**
+     * Endpoints de actuator: la salud es pública; las métricas y las consultas, solo para
+     * administradores o para el usuario del monitoreo (rol {@code Monitoreo}), que
+     * Prometheus envía con autenticación básica.
+     */
     @Bean
-    public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception {
-        AuthenticationManagerBuilder builder = http.getSharedObject(AuthenticationManagerBuilder.class);
-        builder.userDetailsService(usuarioService).passwordEncoder(passwordEncoder);
-        return builder.build();
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        http
+            .securityMatcher(EndpointRequest.toAnyEndpoint())
+            .authorizeHttpRequests(authz -> authz
+                .requestMatchers(EndpointRequest.to("health")).permitAll()
+                .requestMatchers(EndpointRequest.to("prometheus")).hasAnyAuthority("Administrador", "Monitoreo")
+                .anyRequest().hasAuthority("Administrador")
+            )
+            .httpBasic(Customizer.withDefaults());
+
+        http.authenticationManager(authenticationManager());
+
+        return http.build();
     }
 
     @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
             .authorizeHttpRequests(authz -> authz
@@ -82,8 +119,8 @@ public class SecurityConfig {
                 })
             );
 
-        // Registrar explícitamente el UserDetailsService
-        http.userDetailsService(usuarioService);
+        // Registrar explícitamente el AuthenticationManager (UserDetailsService, caché y PasswordEncoder)
+        http.authenticationManager(authenticationManager());
 
         return http.build();
     }
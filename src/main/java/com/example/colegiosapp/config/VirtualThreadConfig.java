@@ -0,0 +1,62 @@
+package com.example.colegiosapp.config;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.colegiosapp.datasource.ThrottledDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Modo de hilos virtuales. Con {@code spring.threads.virtual.enabled=true}, Spring Boot
+ * atiende las peticiones de Tomcat y las tareas programadas en hilos virtuales; los reportes ya usan hilos virtuales para sus trabajos y, en este
+ * modo, también para preparar las secciones.
+ *
+ * <p>Como los hilos dejan de ser el límite, el acceso a la base de datos se limita con
+ * {@link ThrottledDataSource} al tamaño del pool de Hikari.
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public static BeanPostProcessor throttledDataSourcePostProcessor(
+            @Value("${basedatos.acceso.permisos:0}") int permisos,
+            @Value("${basedatos.acceso.timeout:PT30S}") Duration timeout,
+            ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Puede llegar ya envuelto por otro DataSource (p. ej. el que cuenta sentencias)
+                if (bean instanceof DataSource dataSource && !(bean instanceof ThrottledDataSource)) {
+                    try {
+                        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                            int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+                            int max = permisos > 0 ? permisos : poolSize;
+                            log.info("Acceso a la base de datos limitado a {} conexiones simultáneas", max);
+                            return new ThrottledDataSource(dataSource, max, timeout, registry.getObject());
+                        }
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("No se pudo leer el tamaño del pool de conexiones", e);
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+}
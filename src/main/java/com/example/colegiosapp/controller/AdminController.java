@@ -1,31 +1,58 @@
 package com.example.colegiosapp.controller;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
 import com.example.colegiosapp.entity.Institucion;
 import com.example.colegiosapp.entity.Rol;
 import com.example.colegiosapp.entity.Usuario;
+import com.example.colegiosapp.report.ReportDataVersion;
+import com.example.colegiosapp.report.ReportFilter;
+import com.example.colegiosapp.report.ReportJob;
 import com.example.colegiosapp.report.ReportService;
+import com.example.colegiosapp.report.ReportStrategy;
 import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.CitaResumen;
+import com.example.colegiosapp.repository.CitaSpecifications;
 import com.example.colegiosapp.repository.InstitucionRepository;
 import com.example.colegiosapp.repository.RolRepository;
 import com.example.colegiosapp.repository.UsuarioRepository;
+import com.example.colegiosapp.service.CitaEstadoService;
+import com.example.colegiosapp.service.InstitucionCatalog;
+import com.example.colegiosapp.service.InstitucionImportService;
+import com.example.colegiosapp.service.SlotCapacityService;
+import com.example.colegiosapp.service.UsuarioService;
 import com.example.colegiosapp.util.ReportGenerator;
 
 /**
@@ -37,25 +64,46 @@ import com.example.colegiosapp.util.ReportGenerator;
 @RequestMapping("/admin")
 public class AdminController {
 
+    private static final int PREVIEW_PAGE_SIZE = 50;
+    private static final int PREVIEW_MAX_PAGE_SIZE = 200;
+
     private final UsuarioRepository usuarioRepository;
     private final RolRepository rolRepository;
     private final InstitucionRepository institucionRepository;
     private final CitaRepository citaRepository;
     private final ReportGenerator reportGenerator; // se mantiene para las estadísticas
     private final ReportService reportService;     // nuevo servicio de reportes
+    private final ReportDataVersion reportDataVersion;
+    private final SlotCapacityService slotCapacityService;
+    private final InstitucionCatalog institucionCatalog;
+    private final UsuarioService usuarioService;
+    private final InstitucionImportService institucionImportService;
+    private final CitaEstadoService citaEstadoService;
 
     public AdminController(UsuarioRepository usuarioRepository,
                         RolRepository rolRepository,
                         InstitucionRepository institucionRepository,
                         CitaRepository citaRepository,
                         ReportGenerator reportGenerator,
-                        ReportService reportService) {
+                        ReportService reportService,
+                        ReportDataVersion reportDataVersion,
+                        SlotCapacityService slotCapacityService,
+                        InstitucionCatalog institucionCatalog,
+                        UsuarioService usuarioService,
+                        InstitucionImportService institucionImportService,
+                        CitaEstadoService citaEstadoService) {
         this.usuarioRepository = usuarioRepository;
         this.rolRepository = rolRepository;
         this.institucionRepository = institucionRepository;
         this.citaRepository = citaRepository;
         this.reportGenerator = reportGenerator;
         this.reportService = reportService;
+        this.reportDataVersion = reportDataVersion;
+        this.slotCapacityService = slotCapacityService;
+        this.institucionCatalog = institucionCatalog;
+        this.usuarioService = usuarioService;
+        this.institucionImportService = institucionImportService;
+        this.citaEstadoService = citaEstadoService;
     }
 
     /* Muestra el panel de administración con botones para varias funciones de administración. */
@@ -82,6 +130,8 @@ public class AdminController {
         Rol rol = rolRepository.findById(rolId).orElseThrow();
         usuario.setRol(rol);
         usuarioRepository.save(usuario);
+        // El rol va en los datos de usuario cacheados para el login
+        usuarioService.evictFromCache(usuario.getCorreo());
         return "redirect:/admin/modificar-permisos";
     }
 
@@ -96,48 +146,119 @@ public class AdminController {
     @PostMapping("/registrar-institucion")
     public String registrarInstitucion(Institucion institucion) {
         institucionRepository.save(institucion);
+        slotCapacityService.actualizarCapacidad(institucion);
+        institucionCatalog.refresh();
+        // Una institución nueva cambia el reporte global
+        reportDataVersion.bump(institucion.getId());
         return "redirect:/admin/dashboard";
     }
 
     /**
-     * Reportes con filtros: institución (todas) + estado (todos) y previsualización.
+     * Cambia en bloque el estado de las citas de una institución en un rango de fechas
+     * (p. ej. marcar la asistencia de un día o cancelar una fecha cerrada) y vuelve a los
+     * reportes con los mismos filtros.
+     */
+    @PostMapping("/citas/estado")
+    public String cambiarEstadoCitas(@RequestParam("institucionId") Long institucionId,
+                                    @RequestParam("desde") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                    @RequestParam("hasta") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                    @RequestParam(value = "estadoActual", required = false) String estadoActual,
+                                    @RequestParam("nuevoEstado") String nuevoEstado,
+                                    RedirectAttributes redirect) {
+        String actual = estadoActual == null || estadoActual.isBlank() ? null : estadoActual;
+        try {
+            EstadoCita nuevo = EstadoCita.deEtiqueta(nuevoEstado);
+            int actualizadas = citaEstadoService.cambiarEstado(institucionId, desde, hasta,
+                    EstadoCita.deEtiqueta(actual), nuevo);
+            redirect.addFlashAttribute("mensajeEstado", actualizadas + " citas pasaron a \"" + nuevo + "\"");
+        } catch (IllegalArgumentException e) {
+            redirect.addFlashAttribute("errorEstado", e.getMessage());
+        }
+        redirect.addAttribute("institucionId", institucionId);
+        redirect.addAttribute("desde", desde.toString());
+        redirect.addAttribute("hasta", hasta.toString());
+        if (actual != null) {
+            redirect.addAttribute("estado", actual);
+        }
+        return "redirect:/admin/reportes";
+    }
+
+    /** Formulario de carga masiva de instituciones (CSV o XLSX). */
+    @GetMapping("/importar-instituciones")
+    public String mostrarImportarInstituciones() {
+        return "admin/importar_instituciones";
+    }
+
+    /**
+     * Importa las instituciones del archivo y muestra el resumen con los errores por fila.
+     * Las filas válidas se guardan aunque otras tengan errores.
+     */
+    @PostMapping("/importar-instituciones")
+    public String importarInstituciones(@RequestParam("archivo") MultipartFile archivo, Model model) {
+        if (archivo.isEmpty()) {
+            model.addAttribute("error", "Seleccione un archivo .csv o .xlsx");
+            return "admin/importar_instituciones";
+        }
+        try (InputStream in = archivo.getInputStream()) {
+            model.addAttribute("resultado", institucionImportService.importar(archivo.getOriginalFilename(), in));
+        } catch (IllegalArgumentException | IOException e) {
+            model.addAttribute("error", e.getMessage());
+        }
+        return "admin/importar_instituciones";
+    }
+
+    /**
+     * Reportes con filtros: institución (todas) + estado (todos) + rango de fechas y previsualización.
      * - estadosDisponibles se pinta en el combo.
      * - estadoSeleccionado mantiene el valor elegido.
-     * - citas contiene lo que se previsualiza.
+     * - citas contiene la página que se previsualiza. Los filtros se aplican en la
+     *   consulta y se pagina por clave (id_cita &gt; despuesDe), por lo que el costo no
+     *   depende del total de citas; totalCitas sale de una consulta COUNT aparte.
      */
     @GetMapping("/reportes")
     public String mostrarReportes(
             @RequestParam(value = "institucionId", required = false) Long institucionId,
             @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(value = "despuesDe", required = false) Long despuesDe,
+            @RequestParam(value = "tamano", defaultValue = "" + PREVIEW_PAGE_SIZE) int tamano,
             Model model) {
 
         // Combo de instituciones
         List<Institucion> instituciones = institucionRepository.findAll();
         model.addAttribute("instituciones", instituciones);
 
-        // Combo de estados
-        List<String> estadosDisponibles = List.of("Pendiente asistir", "Reprogramada", "Cancelada", "Asistió");
-        String estadoFiltro = (estado == null || estado.isBlank()) ? null : estado.trim();
-        model.addAttribute("estadosDisponibles", estadosDisponibles);
+        // Combo de estados (se acepta el estado sin distinguir mayúsculas)
+        EstadoCita estadoFiltro = null;
+        try {
+            estadoFiltro = EstadoCita.deEtiqueta(estado);
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("errorEstado", e.getMessage());
+        }
+        model.addAttribute("estadosDisponibles", List.of(EstadoCita.values()));
         model.addAttribute("estadoSeleccionado", estadoFiltro);
+        model.addAttribute("desde", desde);
+        model.addAttribute("hasta", hasta);
 
-        // KPIs (si institucionId es null, el util devuelve el resumen global)
+        // KPIs (si institucionId es null, el util devuelve el resumen global) con una sola consulta agregada
         Map<String, Long> stats = reportGenerator.generateCitaStatusSummary(institucionId);
         model.addAttribute("stats", stats);
 
-        // Previsualización (mismos datos que el reporte)
-        List<Cita> citas = (institucionId != null)
-                ? citaRepository.findByInstitucionId(institucionId)
-                : citaRepository.findAll();
-
-        if (estadoFiltro != null) {
-            citas = citas.stream()
-                    .filter(c -> estadoFiltro.equalsIgnoreCase(c.getEstado() == null ? "" : c.getEstado()))
-                    .toList();
-        }
+        // Previsualización paginada por clave (mismos filtros que el reporte)
+        int pageSize = Math.max(1, Math.min(tamano, PREVIEW_MAX_PAGE_SIZE));
+        Specification<Cita> filtro = CitaSpecifications.filtro(institucionId, estadoFiltro, desde, hasta);
+        // Proyección: solo las columnas de la tabla, sin cargar entidades ni instituciones
+        List<CitaResumen> pagina = citaRepository.findBy(filtro.and(CitaSpecifications.idMayorQue(despuesDe)),
+                q -> q.as(CitaResumen.class).sortBy(Sort.by("id")).limit(pageSize + 1).all());
+        boolean hayMas = pagina.size() > pageSize;
+        List<CitaResumen> citas = hayMas ? pagina.subList(0, pageSize) : pagina;
 
         model.addAttribute("citas", citas);
-        model.addAttribute("totalCitas", citas.size());
+        model.addAttribute("totalCitas", citaRepository.count(filtro));
+        model.addAttribute("tamano", pageSize);
+        model.addAttribute("paginaInicial", despuesDe == null);
+        model.addAttribute("siguienteDespuesDe", hayMas ? citas.get(citas.size() - 1).getId() : null);
 
         // Marca de institución seleccionada (solo si aplica)
         if (institucionId != null) {
@@ -148,50 +269,182 @@ public class AdminController {
         return "admin/reportes";
     }
 
-    /** Descarga de reporte en Excel usando el patrón Strategy */
-    @GetMapping("/reportes/download")
-    public ResponseEntity<InputStreamResource> descargarReporte(
-            @RequestParam(value = "institucionId", required = false) Long institucionId) throws IOException {
-
-        // Llama a la estrategia de Excel a través del servicio
-        byte[] data;
+    /** Filtros de las descargas; un estado inexistente responde 400. */
+    private static ReportFilter filtroReporte(String estado, LocalDate desde, LocalDate hasta) {
         try {
-            data = reportService.generateReport("excel", institucionId);
-        } catch (Exception e) {
-            // Manejo de errores simplificado: podrías registrar el error y retornar un 500
-            throw new IOException("Error al generar el reporte en Excel", e);
+            return ReportFilter.of(estado, desde, hasta);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
+    }
 
-        String filename = (institucionId != null ? "reporte_citas_" + institucionId : "reporte_citas") + ".xlsx";
+    /**
+     * Descarga de reporte en Excel usando el patrón Strategy. El libro se escribe
+     * directamente en la respuesta mientras se genera, sin copiarlo a un byte[].
+     */
+    @GetMapping("/reportes/download")
+    public ResponseEntity<StreamingResponseBody> descargarReporte(
+            @RequestParam(value = "institucionId", required = false) Long institucionId,
+            @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+
+        String format = "excel";
+        ReportFilter filter = filtroReporte(estado, desde, hasta);
+        ReportStrategy strategy = reportService.getStrategy(format);
+        String filename = reportService.filenameFor(strategy, institucionId);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentDisposition(ContentDisposition.attachment().filename(filename).build());
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentType(MediaType.parseMediaType(strategy.getContentType()));
 
+        StreamingResponseBody body = out -> {
+            try {
+                reportService.writeReport(format, institucionId, filter, out);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Error al generar el reporte en Excel", e);
+            }
+        };
         return ResponseEntity.ok()
                 .headers(headers)
-                .body(new InputStreamResource(new ByteArrayInputStream(data)));
+                .body(body);
     }
 
-    /** Descarga de reporte en PDF usando el patrón Strategy */
+    /** Descarga de reporte en PDF usando el patrón Strategy, escrito directamente en la respuesta. */
     @GetMapping(value = "/reportes/download-pdf", produces = MediaType.APPLICATION_PDF_VALUE)
-    public ResponseEntity<byte[]> descargarReportePdf(
-            @RequestParam(value = "institucionId", required = false) Long institucionId) {
+    public ResponseEntity<StreamingResponseBody> descargarReportePdf(
+            @RequestParam(value = "institucionId", required = false) Long institucionId,
+            @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
 
-        byte[] pdf;
-        try {
-            pdf = reportService.generateReport("pdf", institucionId);
-        } catch (Exception e) {
-            // Manejo de errores simplificado: podrías registrar el error y retornar un 500
-            throw new RuntimeException("Error al generar el reporte en PDF", e);
-        }
-        String filename = (institucionId != null ? "reporte_citas_" + institucionId : "reporte_citas") + ".pdf";
+        String format = "pdf";
+        ReportFilter filter = filtroReporte(estado, desde, hasta);
+        ReportStrategy strategy = reportService.getStrategy(format);
+        String filename = reportService.filenameFor(strategy, institucionId);
 
         HttpHeaders headers = new HttpHeaders();
         headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
 
+        StreamingResponseBody body = out -> {
+            try {
+                reportService.writeReport(format, institucionId, filter, out);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Error al generar el reporte en PDF", e);
+            }
+        };
         return ResponseEntity.ok()
                 .headers(headers)
                 .contentType(MediaType.APPLICATION_PDF)
-                .body(pdf);
+                .body(body);
+    }
+
+    /**
+     * Exportación plana de las citas (CSV o NDJSON) para cargas masivas. Las filas se
+     * escriben en la respuesta a medida que se leen; con {@code gzip=true} la salida se
+     * comprime como archivo .gz.
+     */
+    @GetMapping("/reportes/export")
+    public ResponseEntity<StreamingResponseBody> exportarCitas(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "institucionId", required = false) Long institucionId,
+            @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+
+        if (!"csv".equalsIgnoreCase(format) && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        ReportFilter filter = filtroReporte(estado, desde, hasta);
+        ReportStrategy strategy = reportService.getStrategy(format);
+        String filename = reportService.filenameFor(strategy, institucionId);
+        HttpHeaders headers = new HttpHeaders();
+        if (gzip) {
+            headers.setContentDisposition(ContentDisposition.attachment().filename(filename + ".gz").build());
+            headers.setContentType(MediaType.parseMediaType("application/gzip"));
+        } else {
+            headers.setContentDisposition(ContentDisposition.attachment().filename(filename).build());
+            headers.setContentType(MediaType.parseMediaType(strategy.getContentType()));
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                if (gzip) {
+                    GZIPOutputStream gz = new GZIPOutputStream(out, 8192);
+                    reportService.writeReport(format, institucionId, filter, gz);
+                    gz.finish();
+                } else {
+                    reportService.writeReport(format, institucionId, filter, out);
+                }
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Error al exportar las citas", e);
+            }
+        };
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * Encola la generación de un reporte en segundo plano. Devuelve el trabajo creado
+     * (id, estado y avance) para que la página consulte su progreso.
+     */
+    @PostMapping("/reportes/jobs")
+    @ResponseBody
+    public ResponseEntity<ReportJob> crearTrabajoReporte(
+            @RequestParam(value = "format", defaultValue = "excel") String format,
+            @RequestParam(value = "institucionId", required = false) Long institucionId,
+            @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        try {
+            ReportJob job = reportService.submitJob(format, institucionId, filtroReporte(estado, desde, hasta));
+            return ResponseEntity.accepted().body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /** Estado y avance de un trabajo de reporte. */
+    @GetMapping("/reportes/jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<ReportJob> estadoTrabajoReporte(@PathVariable String id) {
+        return ResponseEntity.of(reportService.findJob(id));
+    }
+
+    /**
+     * Descarga el archivo de un trabajo terminado. Se abre antes de responder y queda
+     * abierto hasta terminar de enviarlo, así la limpieza de trabajos no lo borra a mitad.
+     */
+    @GetMapping("/reportes/jobs/{id}/download")
+    public ResponseEntity<Resource> descargarTrabajoReporte(@PathVariable String id) throws IOException {
+        ReportJob job = reportService.findJob(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != ReportJob.Status.COMPLETADO) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        InputStream archivo;
+        try {
+            archivo = reportService.openJobArtifact(job);
+        } catch (NoSuchFileException e) {
+            // Se eliminó al vencer su retención
+            return ResponseEntity.notFound().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentDisposition(ContentDisposition.attachment().filename(job.getFilename()).build());
+        headers.setContentType(MediaType.parseMediaType(job.getContentType()));
+        headers.setContentLength(job.getSize());
+        // El conversor cierra el flujo al terminar de escribir la respuesta
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new InputStreamResource(archivo));
     }
 }
@@ -2,29 +2,34 @@ package com.example.colegiosapp.controller;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.Arrays;
 import java.util.List;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.SessionAttributes;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
 import com.example.colegiosapp.entity.Institucion;
 import com.example.colegiosapp.entity.Usuario;
 import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.CitaTutorView;
 import com.example.colegiosapp.repository.InstitucionRepository;
 import com.example.colegiosapp.repository.UsuarioRepository;
+import com.example.colegiosapp.service.BookingTokenService;
+import com.example.colegiosapp.service.CitaAgendaService;
+import com.example.colegiosapp.service.InstitucionCatalog;
+import com.example.colegiosapp.service.SlotCapacityService;
 
-import jakarta.servlet.http.HttpSession;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
 * Gestiona páginas específicas del tutor, como el panel de control, la programación de citas
@@ -34,19 +39,41 @@ import jakarta.servlet.http.HttpSession;
 */
 @Controller
 @RequestMapping("/tutor")
-@SessionAttributes("citaPendiente")
 public class TutorController {
 
     private final InstitucionRepository institucionRepository;
     private final UsuarioRepository usuarioRepository;
     private final CitaRepository citaRepository;
+    private final SlotCapacityService slotCapacityService;
+    private final CitaAgendaService citaAgendaService;
+    private final InstitucionCatalog institucionCatalog;
+    private final BookingTokenService bookingTokenService;
+    private final MeterRegistry meterRegistry;
+
+    /** Opciones de grado del formulario de agendamiento. */
+    private static final List<String> GRADOS = List.of("Primero", "Segundo", "Tercero", "Cuarto", "Quinto", "Sexto",
+            "Séptimo", "Octavo", "Noveno", "Décimo", "Undécimo");
+
+    /** Días que abarca como máximo la consulta de disponibilidad. */
+    private static final int MAX_DIAS_DISPONIBILIDAD = 31;
+    private static final String SIN_CUPO = "La franja elegida no tiene cupo o está fuera del horario de atención. Elija otra hora.";
 
     public TutorController(InstitucionRepository institucionRepository,
                         UsuarioRepository usuarioRepository,
-                        CitaRepository citaRepository) {
+                        CitaRepository citaRepository,
+                        SlotCapacityService slotCapacityService,
+                        CitaAgendaService citaAgendaService,
+                        InstitucionCatalog institucionCatalog,
+                        BookingTokenService bookingTokenService,
+                        MeterRegistry meterRegistry) {
         this.institucionRepository = institucionRepository;
         this.usuarioRepository = usuarioRepository;
         this.citaRepository = citaRepository;
+        this.slotCapacityService = slotCapacityService;
+        this.citaAgendaService = citaAgendaService;
+        this.institucionCatalog = institucionCatalog;
+        this.bookingTokenService = bookingTokenService;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
@@ -65,24 +92,22 @@ public class TutorController {
     @GetMapping("/agendar-cita")
     public String showAgendarCita(@RequestParam(value = "localidad", required = false) String localidad,
                             Model model) {
-        List<String> localidades = institucionRepository.findAllLocalidades();
-        model.addAttribute("localidades", localidades);
+        // Localidades e instituciones salen de la copia en memoria, sin consultar la base de datos
+        model.addAttribute("localidades", institucionCatalog.localidades());
         if (localidad != null && !localidad.isEmpty()) {
-            List<Institucion> instituciones = institucionRepository.findByLocalidad(localidad);
+            List<Institucion> instituciones = institucionCatalog.porLocalidad(localidad);
             model.addAttribute("instituciones", instituciones);
             model.addAttribute("selectedLocalidad", localidad);
         }
         // Proporcionar opciones de grados
-
-        List<String> grados = Arrays.asList("Primero", "Segundo", "Tercero", "Cuarto", "Quinto", "Sexto", "Séptimo", "Octavo", "Noveno", "Décimo", "Undécimo");
-        model.addAttribute("grados", grados);
+        model.addAttribute("grados", GRADOS);
         return "tutor/agendar_cita";
     }
 
     /**
 * Gestiona el primer paso de la programación de citas. Los valores del
-*formulario enviado se almacenan en la sesión y el usuario es
-*redirigido a una página de confirmación.
+*formulario se firman en un token que viaja en la página de confirmación,
+*sin guardar nada en la sesión.
      */
     @PostMapping("/agendar-cita")
     public String processAgendarCita(@RequestParam("institucionId") Long institucionId,
@@ -95,44 +120,89 @@ public class TutorController {
         
         Usuario usuario = usuarioRepository.findByCorreo(authentication.getName()).orElseThrow();
         Institucion institucion = institucionRepository.findById(institucionId).orElseThrow();
+        BookingTokenService.Borrador borrador = new BookingTokenService.Borrador(institucionId, fecha, hora, cantidad, grado);
+        Cita cita = nuevaCita(borrador, institucion, usuario);
 
-        Cita cita = new Cita();
-        cita.setInstitucion(institucion);
-        cita.setFechaCita(fecha);
-        cita.setHoraCita(hora);
-        cita.setCantidadCitas(cantidad);
-        cita.setNombreAgenda(usuario.getNombre() + " " + usuario.getApellido());
-        cita.setCorreoAgenda(usuario.getCorreo());
-        cita.setTelefonoAgenda(usuario.getTelefono());
-        cita.setEstado("Pendiente asistir");
-        cita.setIdSede(1);
+        // Verificación previa; el cupo se reserva al confirmar
+        if (!slotCapacityService.isDisponible(institucionId, cita.getIdSede(), fecha, hora, cantidad)) {
+            contar("agendar", "sin_cupo");
+            model.addAttribute("errorCupo", SIN_CUPO);
+            return showAgendarCita(institucion.getLocalidad(), model);
+        }
 
         model.addAttribute("citaPendiente", cita);
         model.addAttribute("grado", grado);
+        model.addAttribute("token", bookingTokenService.emitir(borrador, usuario.getId()));
         return "tutor/confirmar_cita";
     }
 
     /**
-     * Guarda la cita almacenada en la sesión. Tras guardarla, el usuario
-* es redirigido a la lista de sus citas.
+     * Guarda la cita descrita por el token de la confirmación. Tras guardarla, el usuario
+* es redirigido a la lista de sus citas. Confirmar dos veces el mismo token no crea
+* una segunda cita.
 */
     @PostMapping("/agendar-cita/confirmar")
-    public String confirmarCita(@ModelAttribute("citaPendiente") Cita cita,
-                                HttpSession session) {
-        // Persistir en la cita
-        citaRepository.save(cita);
-        session.removeAttribute("citaPendiente");
+    public String confirmarCita(@RequestParam("token") String token,
+                                Authentication authentication,
+                                Model model) {
+        Usuario usuario = usuarioRepository.findByCorreo(authentication.getName()).orElseThrow();
+        BookingTokenService.Borrador borrador;
+        try {
+            borrador = bookingTokenService.verificar(token, usuario.getId());
+        } catch (IllegalArgumentException e) {
+            contar("agendar", "token_invalido");
+            model.addAttribute("errorCupo", e.getMessage());
+            return showAgendarCita(null, model);
+        }
+        Long institucionId = borrador.institucionId();
+        if (citaRepository.existsActivaEnFranja(usuario.getId(), institucionId, borrador.fecha(), borrador.hora())) {
+            return "redirect:/tutor/citas";
+        }
+        Cita cita = nuevaCita(borrador, institucionRepository.findById(institucionId).orElseThrow(), usuario);
+        // Cupo, token y cita en una transacción: si guardar falla, el cupo no queda tomado
+        boolean agendada;
+        try {
+            agendada = citaAgendaService.agendar(cita, token);
+        } catch (DuplicateKeyException e) {
+            // El mismo token se confirmó antes, quizá en otra pestaña o instancia
+            contar("agendar", "duplicada");
+            return "redirect:/tutor/citas";
+        }
+        if (!agendada) {
+            contar("agendar", "sin_cupo");
+            model.addAttribute("citaPendiente", cita);
+            model.addAttribute("grado", borrador.grado());
+            model.addAttribute("token", token);
+            model.addAttribute("errorCupo", SIN_CUPO);
+            return "tutor/confirmar_cita";
+        }
+        contar("agendar", "ok");
         return "redirect:/tutor/citas";
     }
 
+    /** Cita pendiente con los datos del borrador y la copia de contacto del tutor. */
+    private static Cita nuevaCita(BookingTokenService.Borrador borrador, Institucion institucion, Usuario usuario) {
+        Cita cita = new Cita();
+        cita.setInstitucion(institucion);
+        cita.setFechaCita(borrador.fecha());
+        cita.setHoraCita(borrador.hora());
+        cita.setCantidadCitas(borrador.cantidad());
+        cita.setUsuario(usuario);
+        cita.setNombreAgenda(usuario.getNombre() + " " + usuario.getApellido());
+        cita.setCorreoAgenda(usuario.getCorreo());
+        cita.setTelefonoAgenda(usuario.getTelefono());
+        cita.setEstado(EstadoCita.PENDIENTE_ASISTIR);
+        cita.setIdSede(SlotCapacityService.SEDE_PRINCIPAL);
+        return cita;
+    }
+
     /**
-     * Muestra todas las citas del usuario autenticado. El filtro se realiza
-     * mediante la coincidencia con la dirección de correo electrónico utilizada para programar la cita.
+     * Muestra todas las citas del usuario autenticado, asociadas a él por id_usuario.
      */
     @GetMapping("/citas")
     public String listarCitas(Authentication authentication, Model model) {
         String correo = authentication.getName();
-        List<Cita> citas = citaRepository.findByCorreoAgenda(correo);
+        List<CitaTutorView> citas = citaRepository.findTutorViewByUsuarioCorreo(correo);
         model.addAttribute("citas", citas);
         return "tutor/citas";
     }
@@ -142,7 +212,7 @@ public class TutorController {
      */
     @GetMapping("/citas/{id}/reprogramar")
     public String mostrarReprogramar(@PathVariable Long id, Model model) {
-        Cita cita = citaRepository.findById(id).orElseThrow();
+        Cita cita = citaRepository.findWithInstitucionById(id).orElseThrow();
         model.addAttribute("cita", cita);
         return "tutor/reprogramar_cita";
     }
@@ -154,12 +224,15 @@ public class TutorController {
     @PostMapping("/citas/{id}/reprogramar")
     public String reprogramarCita(@PathVariable Long id,
                                 @RequestParam("fecha") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
-                                @RequestParam("hora") @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime hora) {
-        Cita cita = citaRepository.findById(id).orElseThrow();
-        cita.setFechaCita(fecha);
-        cita.setHoraCita(hora);
-        cita.setEstado("Reprogramada");
-        citaRepository.save(cita);
+                                @RequestParam("hora") @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime hora,
+                                Model model) {
+        if (!citaAgendaService.reprogramar(id, fecha, hora)) {
+            contar("reprogramar", "sin_cupo");
+            model.addAttribute("cita", citaRepository.findWithInstitucionById(id).orElseThrow());
+            model.addAttribute("errorCupo", SIN_CUPO);
+            return "tutor/reprogramar_cita";
+        }
+        contar("reprogramar", "ok");
         return "redirect:/tutor/citas";
     }
 
@@ -168,9 +241,28 @@ public class TutorController {
      */
     @PostMapping("/citas/{id}/cancelar")
     public String cancelarCita(@PathVariable Long id) {
-        Cita cita = citaRepository.findById(id).orElseThrow();
-        cita.setEstado("Cancelada");
-        citaRepository.save(cita);
+        // Cancelar una cita ya cancelada (doble envío, otra pestaña) no cuenta como cancelación
+        contar("cancelar", citaAgendaService.cancelar(id) ? "ok" : "sin_cambio");
         return "redirect:/tutor/citas";
     }
-}
\ No newline at end of file
+
+    /**
+     * Cupo por franja de una institución durante los próximos días hábiles. Lo usa el
+     * formulario de agendamiento para deshabilitar las horas llenas.
+     */
+    @GetMapping("/disponibilidad")
+    @ResponseBody
+    public List<SlotCapacityService.Disponibilidad> disponibilidad(
+            @RequestParam("institucionId") Long institucionId,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "dias", defaultValue = "14") int dias) {
+        LocalDate inicio = desde != null ? desde : LocalDate.now().plusDays(1);
+        int rango = Math.max(1, Math.min(dias, MAX_DIAS_DISPONIBILIDAD));
+        return slotCapacityService.disponibilidad(institucionId, SlotCapacityService.SEDE_PRINCIPAL, inicio, rango);
+    }
+
+    /** Cuenta una operación sobre citas en {@code citas.operaciones}. */
+    private void contar(String operacion, String resultado) {
+        meterRegistry.counter("citas.operaciones", "operacion", operacion, "resultado", resultado).increment();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.colegiosapp.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Cuenta en {@link QueryStats} las sentencias ejecutadas y las filas leídas. Solo se
+ * envuelven las conexiones pedidas desde un hilo que está midiendo (una petición
+ * HTTP); las demás, como las de los reportes en segundo plano, se entregan tal cual.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    public QueryCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        QueryStats stats = QueryStats.current();
+        if (stats == null) {
+            return connection;
+        }
+        return proxy(Connection.class, (p, method, args) -> {
+            Object result = invoke(connection, method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> wrapStatement(Statement.class, (Statement) result, null, stats);
+                case "prepareStatement" -> wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0], stats);
+                case "prepareCall" -> wrapStatement(CallableStatement.class, (Statement) result, (String) args[0], stats);
+                default -> result;
+            };
+        });
+    }
+
+    private static <S extends Statement> S wrapStatement(Class<S> type, Statement statement, String preparedSql,
+                                                        QueryStats stats) {
+        return proxy(type, (p, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                // Statement.execute*(sql) lleva el SQL como argumento; las preparadas, al crearse
+                String sql = preparedSql != null ? preparedSql
+                        : args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                stats.statementExecuted(sql);
+            }
+            Object result = invoke(statement, method, args);
+            return result instanceof ResultSet rs ? wrapResultSet(rs, stats) : result;
+        });
+    }
+
+    private static ResultSet wrapResultSet(ResultSet resultSet, QueryStats stats) {
+        return proxy(ResultSet.class, (p, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                stats.rowFetched();
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.colegiosapp.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.servlet.ServletRequest;
+
+/**
+ * Sentencias SQL ejecutadas y filas leídas durante una petición (o cualquier bloque
+ * de código entre {@link #start()} y {@link #stop()} en el mismo hilo). Además lleva
+ * la cuenta por texto SQL: la misma sentencia repetida muchas veces en una petición
+ * suele ser un N+1.
+ *
+ * <p>En pruebas sirve para fijar un presupuesto de consultas, por ejemplo con MockMvc:
+ * {@code QueryStats.from(result.getRequest()).getStatements() <= 2}.
+ */
+public final class QueryStats {
+
+    /** Atributo de la petición donde {@link QueryStatsFilter} deja las estadísticas. */
+    public static final String REQUEST_ATTRIBUTE = QueryStats.class.getName();
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long rows;
+    private final Map<String, Integer> porSentencia = new HashMap<>();
+
+    /** Empieza a contar en el hilo actual. */
+    public static QueryStats start() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /** Deja de contar en el hilo actual y devuelve lo contado (null si no se había iniciado). */
+    public static QueryStats stop() {
+        QueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    /** Estadísticas de una petición ya atendida, o null si no se midió. */
+    public static QueryStats from(ServletRequest request) {
+        return (QueryStats) request.getAttribute(REQUEST_ATTRIBUTE);
+    }
+
+    void statementExecuted(String sql) {
+        statements++;
+        if (sql != null) {
+            porSentencia.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    void rowFetched() {
+        rows++;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /** Sentencia que más se repitió, o null si no se ejecutó ninguna. */
+    public Map.Entry<String, Integer> getMostRepeated() {
+        Map.Entry<String, Integer> max = null;
+        for (Map.Entry<String, Integer> e : porSentencia.entrySet()) {
+            if (max == null || e.getValue() > max.getValue()) {
+                max = e;
+            }
+        }
+        return max != null ? Map.entry(max.getKey(), max.getValue()) : null;
+    }
+
+    @Override
+    public String toString() {
+        return statements + " sentencias, " + rows + " filas";
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.colegiosapp.datasource;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/** {@code /actuator/sql}: rutas con más sentencias SQL por petición. */
+@Endpoint(id = "sql")
+public class QueryStatsEndpoint {
+
+    private static final int MAX_RUTAS = 20;
+
+    private final QueryStatsRegistry registry;
+
+    public QueryStatsEndpoint(QueryStatsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public List<QueryStatsRegistry.RouteSummary> peores() {
+        return registry.peores(MAX_RUTAS);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.colegiosapp.datasource;
+
+import java.io.IOException;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Mide las sentencias SQL de cada petición y las acumula por ruta (el patrón del
+ * controlador, p. ej. {@code /tutor/citas/{id}/reprogramar}). Las descargas escritas
+ * de forma asíncrona solo cuentan lo ejecutado antes de empezar a transmitir.
+ */
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    private final QueryStatsRegistry registry;
+
+    public QueryStatsFilter(QueryStatsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryStats stats = QueryStats.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            QueryStats.stop();
+            request.setAttribute(QueryStats.REQUEST_ATTRIBUTE, stats);
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            registry.record(pattern != null ? pattern.toString() : "UNKNOWN", stats);
+        }
+    }
+}
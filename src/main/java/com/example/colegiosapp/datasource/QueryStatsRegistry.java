@@ -0,0 +1,85 @@
+package com.example.colegiosapp.datasource;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Acumula por ruta las sentencias y filas de cada petición y conserva los peores
+ * casos. Si una misma sentencia se repite {@code sql.n-mas-uno.umbral} veces o más en
+ * una petición, se registra como posible N+1 (log y contador {@code sql.n-mas-uno}).
+ *
+ * <p>Métricas por ruta: {@code sql.peticion.sentencias} y {@code sql.peticion.filas}.
+ */
+public class QueryStatsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryStatsRegistry.class);
+
+    /** Resumen de una ruta: peticiones atendidas y los valores máximos observados. */
+    public record RouteSummary(String ruta, long peticiones, long sentencias, int maxSentencias, long maxFilas,
+                            String sentenciaMasRepetida, int maxRepeticiones) { }
+
+    /** Medidores de una ruta, creados una sola vez. */
+    private record RouteMeters(DistributionSummary sentencias, DistributionSummary filas) { }
+
+    private final Map<String, RouteSummary> rutas = new ConcurrentHashMap<>();
+    private final Map<String, RouteMeters> medidores = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final int umbralNMasUno;
+
+    public QueryStatsRegistry(MeterRegistry meterRegistry, int umbralNMasUno) {
+        this.meterRegistry = meterRegistry;
+        this.umbralNMasUno = umbralNMasUno;
+    }
+
+    public void record(String ruta, QueryStats stats) {
+        if (stats.getStatements() == 0) {
+            return;
+        }
+        RouteMeters meters = medidores.computeIfAbsent(ruta, r -> new RouteMeters(
+                DistributionSummary.builder("sql.peticion.sentencias").tag("uri", r).register(meterRegistry),
+                DistributionSummary.builder("sql.peticion.filas").tag("uri", r).register(meterRegistry)));
+        meters.sentencias().record(stats.getStatements());
+        meters.filas().record(stats.getRows());
+
+        Map.Entry<String, Integer> repetida = stats.getMostRepeated();
+        if (repetida != null && repetida.getValue() >= umbralNMasUno) {
+            meterRegistry.counter("sql.n-mas-uno", "uri", ruta).increment();
+            log.warn("Posible N+1 en {}: {} ejecuciones de [{}] ({})", ruta, repetida.getValue(), repetida.getKey(), stats);
+        }
+
+        rutas.merge(ruta, resumen(ruta, stats, repetida), QueryStatsRegistry::combinar);
+    }
+
+    /** Rutas con más sentencias en una sola petición, de mayor a menor. */
+    public List<RouteSummary> peores(int limite) {
+        return rutas.values().stream()
+                .sorted(Comparator.comparingInt(RouteSummary::maxSentencias).reversed())
+                .limit(limite)
+                .toList();
+    }
+
+    public void reset() {
+        rutas.clear();
+    }
+
+    private static RouteSummary resumen(String ruta, QueryStats stats, Map.Entry<String, Integer> repetida) {
+        return new RouteSummary(ruta, 1, stats.getStatements(), stats.getStatements(), stats.getRows(),
+                repetida != null ? repetida.getKey() : null, repetida != null ? repetida.getValue() : 0);
+    }
+
+    private static RouteSummary combinar(RouteSummary a, RouteSummary b) {
+        boolean bRepite = b.maxRepeticiones() > a.maxRepeticiones();
+        return new RouteSummary(a.ruta(), a.peticiones() + b.peticiones(), a.sentencias() + b.sentencias(),
+                Math.max(a.maxSentencias(), b.maxSentencias()), Math.max(a.maxFilas(), b.maxFilas()),
+                bRepite ? b.sentenciaMasRepetida() : a.sentenciaMasRepetida(),
+                Math.max(a.maxRepeticiones(), b.maxRepeticiones()));
+    }
+}
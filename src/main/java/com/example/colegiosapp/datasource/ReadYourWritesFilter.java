@@ -0,0 +1,65 @@
+package com.example.colegiosapp.datasource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Lee de la primaria en las peticiones que pueden escribir (todo lo que no es GET,
+ * HEAD u OPTIONS) y, durante {@code duracion}, en las siguientes del mismo navegador:
+ * así, tras agendar o cancelar una cita, la lista de citas ya la muestra aunque las
+ * réplicas vayan atrasadas. La marca viaja en una cookie, sin estado en el servidor,
+ * y vale para cualquier instancia.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "LEER_PRIMARIA";
+
+    private static final Set<String> SEGUROS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final int duracionSegundos;
+
+    public ReadYourWritesFilter(Duration duracion) {
+        this.duracionSegundos = (int) Math.max(1, duracion.toSeconds());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean escribe = !SEGUROS.contains(request.getMethod());
+        if (escribe) {
+            // Antes de continuar: una redirección confirma la respuesta y ya no admite cookies
+            Cookie cookie = new Cookie(COOKIE, "1");
+            cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+            cookie.setMaxAge(duracionSegundos);
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        ReplicaRoutingDataSource.usarPrimaria(escribe || tieneMarca(request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.usarPrimaria(false);
+        }
+    }
+
+    private static boolean tieneMarca(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.colegiosapp.datasource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Mide el retraso de las réplicas con un latido: cada {@code basedatos.replicas.latido}
+ * escribe la hora actual en {@code replica_heartbeat} de la primaria y lee la que ya
+ * llegó a cada réplica. Una réplica recibe lecturas mientras su retraso no supere
+ * {@code basedatos.replicas.retraso-maximo}.
+ *
+ * <p>El latido corre en su propio hilo ({@link #iniciar}) y no en el de las tareas
+ * programadas: una tarea larga, como la pregeneración de reportes, no debe dejar de
+ * medir el retraso mientras las réplicas siguen recibiendo lecturas.
+ *
+ * <p>Métrica {@code basedatos.replica.retraso} (ms) por réplica.
+ */
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private static final String LATIDO = "UPDATE replica_heartbeat SET marca = ? WHERE id = 1";
+
+    private final ReplicaRoutingDataSource routing;
+    private final JdbcTemplate primaria;
+    private final long retrasoMaximo;
+    private final Map<String, AtomicLong> retrasos = new ConcurrentHashMap<>();
+    private ScheduledExecutorService latidos;
+
+    public ReplicaLagMonitor(ReplicaRoutingDataSource routing, Duration retrasoMaximo, MeterRegistry meterRegistry) {
+        this.routing = routing;
+        this.primaria = new JdbcTemplate(routing.getPrimaria());
+        this.retrasoMaximo = retrasoMaximo.toMillis();
+        for (ReplicaRoutingDataSource.Replica replica : routing.getReplicas()) {
+            AtomicLong retraso = new AtomicLong(-1);
+            retrasos.put(replica.getNombre(), retraso);
+            Gauge.builder("basedatos.replica.retraso", retraso, AtomicLong::get)
+                    .tag("replica", replica.getNombre())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        primaria.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, marca BIGINT NOT NULL)");
+    }
+
+    /** Empieza a medir cada {@code latido} en un hilo propio. */
+    public synchronized void iniciar(Duration latido) {
+        if (latidos != null) {
+            return;
+        }
+        latidos = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replica-latido").daemon().factory());
+        latidos.scheduleWithFixedDelay(() -> {
+            try {
+                medir();
+            } catch (RuntimeException e) {
+                // Una excepción cancelaría las siguientes ejecuciones
+                log.warn("Falló la medición del retraso de réplicas", e);
+            }
+        }, 0, latido.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (latidos != null) {
+            latidos.shutdownNow();
+            latidos = null;
+        }
+    }
+
+    /** Escribe el latido en la primaria y actualiza el retraso de cada réplica. */
+    public void medir() {
+        long ahora = System.currentTimeMillis();
+        try {
+            latir(ahora);
+        } catch (DataAccessException e) {
+            log.warn("No se pudo escribir el latido de réplicas en la primaria: {}", e.getMessage());
+            return;
+        }
+        for (ReplicaRoutingDataSource.Replica replica : routing.getReplicas()) {
+            medir(replica, ahora);
+        }
+    }
+
+    /** Escribe la marca con SQL estándar: la fila se crea solo la primera vez. */
+    private void latir(long ahora) {
+        if (primaria.update(LATIDO, ahora) == 0) {
+            try {
+                primaria.update("INSERT INTO replica_heartbeat (id, marca) VALUES (1, ?)", ahora);
+            } catch (DuplicateKeyException e) {
+                // Otra instancia la creó a la vez
+                primaria.update(LATIDO, ahora);
+            }
+        }
+    }
+
+    private void medir(ReplicaRoutingDataSource.Replica replica, long ahora) {
+        Long marca;
+        try {
+            marca = new JdbcTemplate(replica.getDataSource())
+                    .query("SELECT marca FROM replica_heartbeat WHERE id = 1", rs -> rs.next() ? rs.getLong(1) : null);
+        } catch (DataAccessException e) {
+            marca = null;
+            if (replica.isDisponible()) {
+                log.warn("No se pudo leer el latido de la réplica {}: {}", replica.getNombre(), e.getMessage());
+            }
+        }
+        long retraso = marca != null ? ahora - marca : -1;
+        boolean disponible = marca != null && retraso <= retrasoMaximo;
+        if (disponible != replica.isDisponible()) {
+            if (disponible) {
+                log.info("Réplica {} al día ({} ms), vuelve a recibir lecturas", replica.getNombre(), retraso);
+            } else {
+                log.warn("Réplica {} con retraso {} ms, las lecturas van a la primaria", replica.getNombre(),
+                        marca != null ? retraso : "desconocido");
+            }
+        }
+        retrasos.get(replica.getNombre()).set(retraso);
+        replica.actualizar(disponible, marca != null ? marca : 0L);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.colegiosapp.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Envía las transacciones de solo lectura a las réplicas y todo lo demás a la primaria.
+ * La conexión real se pide al ejecutar la primera sentencia, cuando la transacción ya
+ * marcó la conexión como de solo lectura, y se elige por turnos entre las réplicas
+ * disponibles. Una réplica deja de recibir lecturas si su retraso supera el máximo
+ * ({@link ReplicaLagMonitor}) o si falla al conectar; sin réplicas disponibles se lee
+ * de la primaria.
+ *
+ * <p>{@link #usarPrimaria(boolean)} fija la primaria para el hilo actual (peticiones que
+ * escriben y lecturas justo después de escribir, ver {@link ReadYourWritesFilter}).
+ *
+ * <p>Métrica {@code basedatos.lecturas} con la etiqueta {@code destino} (replica o primaria).
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> PRIMARIA = new ThreadLocal<>();
+
+    /** Réplica con su pool y el último estado medido. */
+    public static final class Replica {
+        private final String nombre;
+        private final DataSource dataSource;
+        private volatile boolean disponible;
+        private volatile long alDiaHasta;
+
+        public Replica(String nombre, DataSource dataSource) {
+            this.nombre = nombre;
+            this.dataSource = dataSource;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        public boolean isDisponible() {
+            return disponible;
+        }
+
+        /** Momento (epoch ms) del último latido de la primaria que ya se ve en la réplica. */
+        public long getAlDiaHasta() {
+            return alDiaHasta;
+        }
+
+        void actualizar(boolean disponible, long alDiaHasta) {
+            this.disponible = disponible;
+            this.alDiaHasta = alDiaHasta;
+        }
+    }
+
+    private final DataSource primaria;
+    private final List<Replica> replicas;
+    private final AtomicInteger turno = new AtomicInteger();
+    private final Counter lecturasReplica;
+    private final Counter lecturasPrimaria;
+
+    public ReplicaRoutingDataSource(DataSource primaria, List<Replica> replicas, MeterRegistry meterRegistry) {
+        super(primaria);
+        this.primaria = primaria;
+        this.replicas = List.copyOf(replicas);
+        this.lecturasReplica = meterRegistry.counter("basedatos.lecturas", "destino", "replica");
+        this.lecturasPrimaria = meterRegistry.counter("basedatos.lecturas", "destino", "primaria");
+        setReadOnlyDataSource(new ReadOnlyDataSource());
+    }
+
+    /** Hace que las lecturas del hilo actual vayan a la primaria ({@code true}) o no. */
+    public static void usarPrimaria(boolean primaria) {
+        if (primaria) {
+            PRIMARIA.set(Boolean.TRUE);
+        } else {
+            PRIMARIA.remove();
+        }
+    }
+
+    public DataSource getPrimaria() {
+        return primaria;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Momento (epoch ms) hasta el que todas las réplicas que reciben lecturas tienen los
+     * datos de la primaria; {@link Long#MAX_VALUE} si no hay ninguna (se lee de la primaria).
+     */
+    public long alDiaHasta() {
+        long min = Long.MAX_VALUE;
+        for (Replica replica : replicas) {
+            if (replica.disponible) {
+                min = Math.min(min, replica.alDiaHasta);
+            }
+        }
+        return min;
+    }
+
+    private Connection conexionLectura() throws SQLException {
+        if (PRIMARIA.get() == null) {
+            int inicio = Math.floorMod(turno.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((inicio + i) % replicas.size());
+                if (!replica.disponible) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    lecturasReplica.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    // Vuelve a la rotación cuando el monitor la encuentre al día
+                    replica.disponible = false;
+                    log.warn("Réplica {} sin conexión, se lee de la primaria: {}", replica.nombre, e.getMessage());
+                }
+            }
+        }
+        lecturasPrimaria.increment();
+        return primaria.getConnection();
+    }
+
+    /** Origen de las conexiones de solo lectura. */
+    private final class ReadOnlyDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return conexionLectura();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return conexionLectura();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.colegiosapp.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Limita las conexiones abiertas a la vez con un semáforo del tamaño del pool. Con
+ * hilos virtuales puede haber miles de peticiones esperando la base de datos; así
+ * esperan estacionadas en el semáforo, en orden de llegada, en lugar de acumularse en
+ * el pool hasta agotar su tiempo de espera. El permiso se devuelve al cerrar la
+ * conexión.
+ *
+ * <p>Métricas: {@code basedatos.acceso.espera}, {@code basedatos.acceso.en-espera} y
+ * {@code basedatos.acceso.en-uso}.
+ */
+public class ThrottledDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final long timeoutNanos;
+    private final Timer waitTimer;
+
+    public ThrottledDataSource(DataSource target, int maxPermits, Duration timeout, MeterRegistry registry) {
+        super(target);
+        this.maxPermits = maxPermits;
+        this.permits = new Semaphore(maxPermits, true);
+        this.timeoutNanos = timeout.toNanos();
+        this.waitTimer = Timer.builder("basedatos.acceso.espera").register(registry);
+        Gauge.builder("basedatos.acceso.en-espera", permits, Semaphore::getQueueLength).register(registry);
+        Gauge.builder("basedatos.acceso.en-uso", permits, p -> maxPermits - p.availablePermits()).register(registry);
+    }
+
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return wrap(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return wrap(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido esperando una conexión", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            throw new SQLTransientConnectionException("No hay conexiones disponibles tras "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> invoke(connection, released, method, args);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handler);
+    }
+
+    private Object invoke(Connection connection, AtomicBoolean released, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        } finally {
+            // El permiso se devuelve una sola vez, aunque close() falle o se repita
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0
+                    && released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -5,16 +5,24 @@ import java.time.LocalTime;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 
 
+// Índices de las búsquedas frecuentes: conteos y filtros por estado, "mis citas" del
+// tutor y rangos de fechas por institución (reportes, cambios masivos)
 @Entity
-@Table(name = "citas")
+@Table(name = "citas", indexes = {
+        @Index(name = "idx_citas_colegio_estado", columnList = "id_colegio, estado_codigo"),
+        @Index(name = "idx_citas_usuario", columnList = "id_usuario"),
+        @Index(name = "idx_citas_colegio_fecha", columnList = "id_colegio, fecha_cita")
+})
 public class Cita {
 
     @Id
@@ -28,6 +36,8 @@ public class Cita {
     @Column(name = "hora_cita")
     private LocalTime horaCita;
 
+    // Datos de contacto del tutor al momento de agendar (opcionales); la cita se asocia
+    // al tutor por id_usuario
     @Column(name = "nombre_agenda")
     private String nombreAgenda;
 
@@ -40,15 +50,21 @@ public class Cita {
     @Column(name = "cantidad_citas")
     private Integer cantidadCitas;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_colegio")
     private Institucion institucion;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_usuario")
+    private Usuario usuario;
+
     @Column(name = "id_sede")
     private Integer idSede;
 
-    @Column(name = "estado")
-    private String estado;
+    // Código numérico (EstadoCitaConverter); la columna de texto "estado" anterior solo
+    // se lee al migrar (CitaMigration)
+    @Column(name = "estado_codigo")
+    private EstadoCita estado;
 
     public Cita() {
     }
@@ -117,6 +133,14 @@ public class Cita {
         this.institucion = institucion;
     }
 
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    public void setUsuario(Usuario usuario) {
+        this.usuario = usuario;
+    }
+
     public Integer getIdSede() {
         return idSede;
     }
@@ -125,11 +149,11 @@ public class Cita {
         this.idSede = idSede;
     }
 
-    public String getEstado() {
+    public EstadoCita getEstado() {
         return estado;
     }
 
-    public void setEstado(String estado) {
+    public void setEstado(EstadoCita estado) {
         this.estado = estado;
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.example.colegiosapp.entity;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Total de citas de una institución en un estado. Se mantiene al escribir las citas
+ * (ver {@code CitaStatusCounter}) para que los resúmenes por estado no recorran la
+ * tabla de citas.
+ */
+@Entity
+@Table(name = "cita_status_counts")
+@IdClass(CitaStatusCount.Key.class)
+public class CitaStatusCount {
+
+    @Id
+    @Column(name = "id_colegio")
+    private Long institucionId;
+
+    // Código de EstadoCita: los converters no se aplican a los atributos de la clave
+    @Id
+    @Column(name = "estado")
+    private short estado;
+
+    @Column(name = "total", nullable = false)
+    private Long total;
+
+    public CitaStatusCount() {
+    }
+
+    public Long getInstitucionId() {
+        return institucionId;
+    }
+
+    public EstadoCita getEstado() {
+        return EstadoCita.deCodigo(estado);
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    /** Clave compuesta (institución, código de estado). */
+    public static class Key implements Serializable {
+
+        private Long institucionId;
+        private short estado;
+
+        public Key() {
+        }
+
+        public Key(Long institucionId, short estado) {
+            this.institucionId = institucionId;
+            this.estado = estado;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key that)) return false;
+            return Objects.equals(institucionId, that.institucionId) && estado == that.estado;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(institucionId, estado);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.colegiosapp.entity;
+
+/**
+ * Estados de una cita, en el orden en que se muestran en los reportes. En la base de
+ * datos se guarda el {@link #getCodigo() código} (SMALLINT, ver
+ * {@link EstadoCitaConverter}); en pantallas, reportes y parámetros de formularios se
+ * usa la {@link #getEtiqueta() etiqueta}, que es también lo que devuelve
+ * {@link #toString()}.
+ */
+public enum EstadoCita {
+
+    PENDIENTE_ASISTIR((short) 1, "Pendiente asistir"),
+    REPROGRAMADA((short) 2, "Reprogramada"),
+    CANCELADA((short) 3, "Cancelada"),
+    ASISTIO((short) 4, "Asistió");
+
+    private final short codigo;
+    private final String etiqueta;
+
+    EstadoCita(short codigo, String etiqueta) {
+        this.codigo = codigo;
+        this.etiqueta = etiqueta;
+    }
+
+    public short getCodigo() {
+        return codigo;
+    }
+
+    public String getEtiqueta() {
+        return etiqueta;
+    }
+
+    public static EstadoCita deCodigo(short codigo) {
+        for (EstadoCita e : values()) {
+            if (e.codigo == codigo) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("Código de estado desconocido: " + codigo);
+    }
+
+    /**
+     * Estado con esa etiqueta, sin distinguir mayúsculas; null si la etiqueta está vacía.
+     * @throws IllegalArgumentException si no corresponde a ningún estado.
+     */
+    public static EstadoCita deEtiqueta(String etiqueta) {
+        if (etiqueta == null || etiqueta.isBlank()) {
+            return null;
+        }
+        for (EstadoCita e : values()) {
+            if (e.etiqueta.equalsIgnoreCase(etiqueta.trim())) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("Estado no válido: " + etiqueta.trim());
+    }
+
+    /** Etiqueta del estado, o cadena vacía si es null (celdas de reportes). */
+    public static String etiquetaDe(EstadoCita estado) {
+        return estado == null ? "" : estado.etiqueta;
+    }
+
+    @Override
+    public String toString() {
+        return etiqueta;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.colegiosapp.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/** Guarda {@link EstadoCita} como su código numérico (SMALLINT) en lugar del texto. */
+@Converter(autoApply = true)
+public class EstadoCitaConverter implements AttributeConverter<EstadoCita, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(EstadoCita estado) {
+        return estado == null ? null : estado.getCodigo();
+    }
+
+    @Override
+    public EstadoCita convertToEntityAttribute(Short codigo) {
+        return codigo == null ? null : EstadoCita.deCodigo(codigo);
+    }
+}
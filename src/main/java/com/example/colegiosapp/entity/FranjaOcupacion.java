@@ -0,0 +1,98 @@
+package com.example.colegiosapp.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Personas citadas en una franja horaria de una institución y sede. Se mantiene al
+ * reservar, mover y cancelar citas (ver {@code SlotCapacityService}), con un UPDATE
+ * condicionado a la capacidad, así el cupo se respeta aunque haya varias instancias.
+ */
+@Entity
+@Table(name = "franja_ocupacion")
+@IdClass(FranjaOcupacion.Key.class)
+public class FranjaOcupacion {
+
+    @Id
+    @Column(name = "id_colegio")
+    private Long institucionId;
+
+    @Id
+    @Column(name = "id_sede")
+    private Integer idSede;
+
+    @Id
+    @Column(name = "fecha")
+    private LocalDate fecha;
+
+    // Hora de inicio de la franja
+    @Id
+    @Column(name = "hora")
+    private LocalTime hora;
+
+    @Column(name = "ocupados", nullable = false)
+    private Integer ocupados;
+
+    public FranjaOcupacion() {
+    }
+
+    public Long getInstitucionId() {
+        return institucionId;
+    }
+
+    public Integer getIdSede() {
+        return idSede;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public LocalTime getHora() {
+        return hora;
+    }
+
+    public Integer getOcupados() {
+        return ocupados;
+    }
+
+    /** Clave compuesta (institución, sede, fecha, hora de inicio). */
+    public static class Key implements Serializable {
+
+        private Long institucionId;
+        private Integer idSede;
+        private LocalDate fecha;
+        private LocalTime hora;
+
+        public Key() {
+        }
+
+        public Key(Long institucionId, Integer idSede, LocalDate fecha, LocalTime hora) {
+            this.institucionId = institucionId;
+            this.idSede = idSede;
+            this.fecha = fecha;
+            this.hora = hora;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key that)) return false;
+            return Objects.equals(institucionId, that.institucionId) && Objects.equals(idSede, that.idSede)
+                    && Objects.equals(fecha, that.fecha) && Objects.equals(hora, that.hora);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(institucionId, idSede, fecha, hora);
+        }
+    }
+}
@@ -31,6 +31,10 @@ public class Institucion {
     @Column(name = "telefono")
     private String telefono;
 
+    /** Personas que se atienden por franja horaria; null usa la capacidad por defecto. */
+    @Column(name = "capacidad_franja")
+    private Integer capacidadFranja;
+
     public Institucion() {
     }
 
@@ -82,6 +86,14 @@ public class Institucion {
         this.telefono = telefono;
     }
 
+    public Integer getCapacidadFranja() {
+        return capacidadFranja;
+    }
+
+    public void setCapacidadFranja(Integer capacidadFranja) {
+        this.capacidadFranja = capacidadFranja;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,43 @@
+package com.example.colegiosapp.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Versión de los datos de una institución para los reportes en caché y pregenerados.
+ * Se incrementa en la transacción que escribe los datos (ver {@code ReportDataVersion}),
+ * así la ven todas las instancias y sobrevive a los reinicios. La fila con
+ * {@code id_colegio = 0} recoge los cambios que no son de una institución concreta.
+ */
+@Entity
+@Table(name = "institucion_data_versions")
+public class InstitucionDataVersion {
+
+    @Id
+    @Column(name = "id_colegio")
+    private Long institucionId;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Epoch en milisegundos del último cambio
+    @Column(name = "modificada_en", nullable = false)
+    private Long modificadaEn;
+
+    public InstitucionDataVersion() {
+    }
+
+    public Long getInstitucionId() {
+        return institucionId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Long getModificadaEn() {
+        return modificadaEn;
+    }
+}
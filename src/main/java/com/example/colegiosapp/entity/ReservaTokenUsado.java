@@ -0,0 +1,36 @@
+package com.example.colegiosapp.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Token de reserva ya confirmado (ver {@code BookingTokenService}). La clave primaria
+ * impide que dos confirmaciones del mismo token, en la misma instancia o en otra,
+ * creen dos citas. Las filas se borran cuando el token habría vencido.
+ */
+@Entity
+@Table(name = "reserva_tokens_usados")
+public class ReservaTokenUsado {
+
+    // SHA-256 del token en Base64 URL
+    @Id
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash;
+
+    // Epoch en segundos a partir del cual la fila ya no hace falta
+    @Column(name = "expira_en", nullable = false)
+    private Long expiraEn;
+
+    public ReservaTokenUsado() {
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public Long getExpiraEn() {
+        return expiraEn;
+    }
+}
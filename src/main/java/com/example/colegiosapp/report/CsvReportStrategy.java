@@ -0,0 +1,107 @@
+package com.example.colegiosapp.report;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.repository.CitaExportRow;
+import com.example.colegiosapp.repository.CitaRepository;
+
+/**
+ * Exporta las citas como CSV (RFC 4180, UTF-8). Las filas se leen con un cursor de
+ * solo avance y se escriben a medida que llegan, sin resumen ni formato, por lo que
+ * es el formato más liviano para cargas masivas.
+ */
+@Component("csvReportStrategy")
+public class CsvReportStrategy implements ReportStrategy {
+
+    private static final String HEADER = "id,id_colegio,fecha,hora,nombre,correo,telefono,cantidad,estado";
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private static final String FORMULA_START = "=+-@\t\r";
+
+    private final CitaRepository citaRepository;
+
+    public CsvReportStrategy(CitaRepository citaRepository) {
+        this.citaRepository = citaRepository;
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/csv;charset=UTF-8";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "csv";
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void writeReport(Long institucionId, ReportFilter filter, OutputStream out, ReportProgress progress) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write("\r\n");
+        try (Stream<CitaExportRow> rows = citaRepository.streamForExport(
+                institucionId, filter.estado(), filter.desde(), filter.hasta())) {
+            Iterator<CitaExportRow> it = rows.iterator();
+            while (it.hasNext()) {
+                CitaExportRow c = it.next();
+                writer.write(String.valueOf(c.getId()));
+                writer.write(',');
+                writer.write(c.getInstitucionId() != null ? String.valueOf(c.getInstitucionId()) : "");
+                writer.write(',');
+                writer.write(c.getFechaCita() != null ? c.getFechaCita().format(DATE_FORMATTER) : "");
+                writer.write(',');
+                writer.write(c.getHoraCita() != null ? c.getHoraCita().format(TIME_FORMATTER) : "");
+                writer.write(',');
+                writeField(writer, c.getNombreAgenda());
+                writer.write(',');
+                writeField(writer, c.getCorreoAgenda());
+                writer.write(',');
+                writeField(writer, c.getTelefonoAgenda());
+                writer.write(',');
+                writer.write(c.getCantidadCitas() != null ? String.valueOf(c.getCantidadCitas()) : "");
+                writer.write(',');
+                writeField(writer, EstadoCita.etiquetaDe(c.getEstado()));
+                writer.write("\r\n");
+            }
+        }
+        // Solo se vacía el búfer: el flujo de salida pertenece a quien llama
+        writer.flush();
+        progress.sectionCompleted(1, 1);
+    }
+
+    /**
+     * Escribe un campo de texto, entre comillas solo si contiene separadores o comillas.
+     * Los valores que empiezan como una fórmula ({@code = + - @}, tabulador o retorno) se
+     * anteponen con {@code '} para que Excel los abra como texto y no los ejecute.
+     */
+    private void writeField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && FORMULA_START.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -1,47 +1,190 @@
 package com.example.colegiosapp.report;
 
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.example.colegiosapp.entity.EstadoCita;
 import com.example.colegiosapp.entity.Institucion;
 import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.CitaResumen;
 import com.example.colegiosapp.repository.InstitucionRepository;
+import com.example.colegiosapp.util.ReportGenerator;
 
+/**
+ * Genera el reporte de citas en Excel con un libro SXSSF: solo se mantiene en memoria
+ * una ventana de filas y el resto se vuelca a disco, por lo que el consumo de heap no
+ * depende del número de citas. El ancho de cada columna se calcula mientras se escriben
+ * las filas, evitando el costoso autoSizeColumn. Con todas las instituciones, el
+ * detalle de cada una se consulta en paralelo ({@link ReportSectionLoader}) y llega
+ * por bloques acotados mientras las hojas se escriben en orden, así que el modo
+ * paralelo tampoco retiene instituciones completas en memoria.
+ */
 @Component("excelReportStrategy")
 public class ExcelReportStrategy implements ReportStrategy {
 
+    /** Filas que SXSSF mantiene en memoria antes de volcarlas al archivo temporal. */
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    private static final String[] HEADERS = {"ID", "Fecha", "Hora", "Nombre", "Correo", "Teléfono", "Cantidad", "Estado"};
+    private static final int MAX_COLUMN_CHARS = 60;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final CitaRepository citaRepository;
     private final InstitucionRepository institucionRepository;
+    private final ReportGenerator reportGenerator;
+    private final ReportSectionLoader sectionLoader;
 
     public ExcelReportStrategy(CitaRepository citaRepository,
-                            InstitucionRepository institucionRepository) {
+                            InstitucionRepository institucionRepository,
+                            ReportGenerator reportGenerator,
+                            ReportSectionLoader sectionLoader) {
+        this.citaRepository = citaRepository;
         this.institucionRepository = institucionRepository;
+        this.reportGenerator = reportGenerator;
+        this.sectionLoader = sectionLoader;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "xlsx";
     }
 
     @Override
-    public byte[] generateReport(Long institucionId) throws Exception {
-        Workbook workbook = new XSSFWorkbook();
-        if (institucionId != null) {
-            Institucion institucion = institucionRepository.findById(institucionId).orElse(null);
-            createSheetForInstitucion(workbook, institucion);
-        } else {
-            List<Institucion> instituciones = institucionRepository.findAll();
-            for (Institucion inst : instituciones) {
-                createSheetForInstitucion(workbook, inst);
+    @Transactional(readOnly = true)
+    public void writeReport(Long institucionId, ReportFilter filter, OutputStream out, ReportProgress progress) throws Exception {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            if (institucionId != null) {
+                Institucion institucion = institucionRepository.findById(institucionId).orElse(null);
+                writeSheetFromStream(workbook, institucion, reportGenerator.generateCitaStatusSummary(institucionId), filter);
+                progress.sectionCompleted(1, 1);
+            } else {
+                List<Institucion> instituciones = institucionRepository.findAll();
+                // Un único GROUP BY para los resúmenes de todas las instituciones
+                Map<Long, Map<String, Long>> summaries = reportGenerator.generateCitaStatusSummaryByInstitucion();
+                int total = instituciones.size();
+                if (sectionLoader.isEnabledFor(total)) {
+                    // POI no es seguro entre hilos: en paralelo solo se leen las filas
+                    sectionLoader.<CitaResumen>forEachInOrder(instituciones,
+                            inst -> citaRepository.streamForReport(
+                                    inst.getId(), filter.estado(), filter.desde(), filter.hasta()),
+                            (i, inst, citas) -> {
+                                createSheetForInstitucion(workbook, inst,
+                                        ReportGenerator.summaryFor(summaries, inst.getId()), citas);
+                                progress.sectionCompleted(i + 1, total);
+                            });
+                } else {
+                    for (int i = 0; i < total; i++) {
+                        Institucion inst = instituciones.get(i);
+                        writeSheetFromStream(workbook, inst, ReportGenerator.summaryFor(summaries, inst.getId()), filter);
+                        progress.sectionCompleted(i + 1, total);
+                    }
+                }
+            }
+            workbook.write(out);
+        } finally {
+            // Elimina los archivos temporales de las filas ya volcadas
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /** Crea la hoja leyendo el detalle de la base de datos como flujo, fila a fila. */
+    private void writeSheetFromStream(SXSSFWorkbook workbook, Institucion institucion,
+                                    Map<String, Long> summary, ReportFilter filter) {
+        if (institucion == null) {
+            createSheetForInstitucion(workbook, null, summary, null);
+            return;
+        }
+        try (Stream<CitaResumen> citas = citaRepository.streamForReport(
+                institucion.getId(), filter.estado(), filter.desde(), filter.hasta())) {
+            createSheetForInstitucion(workbook, institucion, summary, citas.iterator());
+        }
+    }
+
+    /** Crea la hoja de una institución: título, resumen por estado y el detalle de citas. */
+    private void createSheetForInstitucion(SXSSFWorkbook workbook, Institucion institucion,
+                                        Map<String, Long> summary, Iterator<? extends CitaResumen> it) {
+        if (institucion == null) {
+            Sheet sheet = workbook.createSheet("Sin datos");
+            sheet.createRow(0).createCell(0).setCellValue("Institución no encontrada.");
+            return;
+        }
+
+        Sheet sheet = workbook.createSheet("Inst_" + institucion.getId());
+        int[] widths = new int[HEADERS.length];
+        int rowNum = 0;
+
+        // Título (no cuenta para el ancho de la columna)
+        Row titleRow = sheet.createRow(rowNum++);
+        titleRow.createCell(0).setCellValue("Reporte de citas para " + nullSafe(institucion.getNombre()));
+
+        // Resumen
+        for (Map.Entry<String, Long> entry : summary.entrySet()) {
+            Row summaryRow = sheet.createRow(rowNum++);
+            setCell(summaryRow, 0, entry.getKey(), widths);
+            summaryRow.createCell(1).setCellValue(entry.getValue());
+            track(widths, 1, String.valueOf(entry.getValue()));
+        }
+
+        rowNum++; // Fila vacía antes del detalle
+
+        // Cabecera
+        Row headerRow = sheet.createRow(rowNum++);
+        for (int i = 0; i < HEADERS.length; i++) {
+            setCell(headerRow, i, HEADERS[i], widths);
+        }
+
+        // Detalle
+        while (it.hasNext()) {
+            CitaResumen c = it.next();
+            Row row = sheet.createRow(rowNum++);
+            row.createCell(0).setCellValue(c.getId());
+            track(widths, 0, String.valueOf(c.getId()));
+            setCell(row, 1, c.getFechaCita() != null ? c.getFechaCita().format(DATE_FORMATTER) : "", widths);
+            setCell(row, 2, c.getHoraCita() != null ? c.getHoraCita().format(TIME_FORMATTER) : "", widths);
+            setCell(row, 3, nullSafe(c.getNombreAgenda()), widths);
+            setCell(row, 4, nullSafe(c.getCorreoAgenda()), widths);
+            setCell(row, 5, nullSafe(c.getTelefonoAgenda()), widths);
+            if (c.getCantidadCitas() != null) {
+                row.createCell(6).setCellValue(c.getCantidadCitas());
+                track(widths, 6, String.valueOf(c.getCantidadCitas()));
             }
+            setCell(row, 7, EstadoCita.etiquetaDe(c.getEstado()), widths);
         }
-        // Convertir a bytes
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            workbook.write(baos);
-            return baos.toByteArray();
+
+        for (int i = 0; i < widths.length; i++) {
+            sheet.setColumnWidth(i, (Math.min(widths[i], MAX_COLUMN_CHARS) + 2) * 256);
         }
     }
 
-    // Copia aquí el método createSheetForInstitucion() tal como lo tienes en ReportGenerator
-    private void createSheetForInstitucion(@SuppressWarnings("unused") Workbook workbook, @SuppressWarnings("unused") Institucion institution) {
-        // … (toda la lógica de creación de la hoja, cabecera y filas)
+    private void setCell(Row row, int column, String value, int[] widths) {
+        row.createCell(column).setCellValue(value);
+        track(widths, column, value);
     }
+
+    private void track(int[] widths, int column, String value) {
+        if (value.length() > widths[column]) {
+            widths[column] = value.length();
+        }
+    }
+
+    private String nullSafe(String s) { return s == null ? "" : s; }
 }
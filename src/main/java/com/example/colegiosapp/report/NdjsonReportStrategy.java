@@ -0,0 +1,85 @@
+package com.example.colegiosapp.report;
+
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.colegiosapp.repository.CitaExportRow;
+import com.example.colegiosapp.repository.CitaRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Exporta las citas como NDJSON: un objeto JSON por línea. Igual que el CSV, lee las
+ * filas con un cursor de solo avance y las escribe con el generador de Jackson a
+ * medida que llegan.
+ */
+@Component("ndjsonReportStrategy")
+public class NdjsonReportStrategy implements ReportStrategy {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final CitaRepository citaRepository;
+    private final ObjectMapper objectMapper;
+
+    public NdjsonReportStrategy(CitaRepository citaRepository, ObjectMapper objectMapper) {
+        this.citaRepository = citaRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/x-ndjson";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "ndjson";
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void writeReport(Long institucionId, ReportFilter filter, OutputStream out, ReportProgress progress) throws Exception {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        // El flujo de salida pertenece a quien llama
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.setRootValueSeparator(new SerializedString("\n"));
+        try (Stream<CitaExportRow> rows = citaRepository.streamForExport(
+                institucionId, filter.estado(), filter.desde(), filter.hasta())) {
+            Iterator<CitaExportRow> it = rows.iterator();
+            while (it.hasNext()) {
+                CitaExportRow c = it.next();
+                gen.writeStartObject();
+                gen.writeNumberField("id", c.getId());
+                if (c.getInstitucionId() != null) {
+                    gen.writeNumberField("idColegio", c.getInstitucionId());
+                } else {
+                    gen.writeNullField("idColegio");
+                }
+                gen.writeStringField("fecha", c.getFechaCita() != null ? c.getFechaCita().format(DATE_FORMATTER) : null);
+                gen.writeStringField("hora", c.getHoraCita() != null ? c.getHoraCita().format(TIME_FORMATTER) : null);
+                gen.writeStringField("nombre", c.getNombreAgenda());
+                gen.writeStringField("correo", c.getCorreoAgenda());
+                gen.writeStringField("telefono", c.getTelefonoAgenda());
+                if (c.getCantidadCitas() != null) {
+                    gen.writeNumberField("cantidad", c.getCantidadCitas());
+                } else {
+                    gen.writeNullField("cantidad");
+                }
+                gen.writeStringField("estado", c.getEstado() != null ? c.getEstado().getEtiqueta() : null);
+                gen.writeEndObject();
+            }
+        }
+        // Línea final para que el último objeto también termine en salto de línea
+        gen.writeRaw('\n');
+        gen.close();
+        progress.sectionCompleted(1, 1);
+    }
+}
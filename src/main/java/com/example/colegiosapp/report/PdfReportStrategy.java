@@ -1,56 +1,216 @@
 package com.example.colegiosapp.report;
 
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.example.colegiosapp.entity.EstadoCita;
 import com.example.colegiosapp.entity.Institucion;
 import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.CitaResumen;
 import com.example.colegiosapp.repository.InstitucionRepository;
+import com.example.colegiosapp.util.ReportGenerator;
 import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
 import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
 import com.lowagie.text.pdf.PdfWriter;
 
+/**
+ * Genera el reporte de citas en PDF escribiendo directamente en el flujo de salida.
+ * La tabla de detalle se marca como incompleta y se agrega al documento por bloques,
+ * de modo que las filas ya escritas se liberan en lugar de acumular una tabla gigante.
+ * Fuentes y formateadores son constantes compartidas por todas las secciones. Con
+ * todas las instituciones, el detalle de cada una se consulta en paralelo
+ * ({@link ReportSectionLoader}) y llega por bloques acotados; las tablas se arman y
+ * vuelcan igual que en modo secuencial, en orden.
+ */
 @Component("pdfReportStrategy")
 public class PdfReportStrategy implements ReportStrategy {
 
-    @SuppressWarnings("unused")
+    /** Filas de detalle que se acumulan antes de volcarlas al documento. */
+    private static final int ROWS_PER_CHUNK = 200;
+
+    private static final Font H1 = new Font(Font.HELVETICA, 16, Font.BOLD);
+    private static final Font H2 = new Font(Font.HELVETICA, 12, Font.BOLD);
+    private static final Font TH = new Font(Font.HELVETICA, 10, Font.BOLD);
+    private static final Font TD = new Font(Font.HELVETICA, 10);
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final String[] HEADERS = {"ID", "Fecha", "Hora", "Nombre", "Correo", "Teléfono", "Cantidad", "Estado"};
+    private static final float[] WIDTHS = {8, 14, 12, 26, 28, 20, 12, 16};
+
     private final CitaRepository citaRepository;
     private final InstitucionRepository institucionRepository;
+    private final ReportGenerator reportGenerator;
+    private final ReportSectionLoader sectionLoader;
 
     public PdfReportStrategy(CitaRepository citaRepository,
-                            InstitucionRepository institucionRepository) {
+                            InstitucionRepository institucionRepository,
+                            ReportGenerator reportGenerator,
+                            ReportSectionLoader sectionLoader) {
         this.citaRepository = citaRepository;
         this.institucionRepository = institucionRepository;
+        this.reportGenerator = reportGenerator;
+        this.sectionLoader = sectionLoader;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/pdf";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "pdf";
     }
 
     @Override
-    @SuppressWarnings("ConvertToTryWithResources")
-    public byte[] generateReport(Long institucionId) throws Exception {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            Document document = new Document(PageSize.A4.rotate(), 36, 36, 36, 36);
-            PdfWriter.getInstance(document, baos);
-            document.open();
-
-            if (institucionId != null) {
-                Institucion inst = institucionRepository.findById(institucionId).orElse(null);
-                addInstitutionSection(document, inst);
+    @Transactional(readOnly = true)
+    public void writeReport(Long institucionId, ReportFilter filter, OutputStream out, ReportProgress progress) throws Exception {
+        Document document = new Document(PageSize.A4.rotate(), 36, 36, 36, 36);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        // El flujo de salida pertenece a quien llama
+        writer.setCloseStream(false);
+        document.open();
+
+        if (institucionId != null) {
+            Institucion inst = institucionRepository.findById(institucionId).orElse(null);
+            addInstitutionSection(document, inst, reportGenerator.generateCitaStatusSummary(institucionId), filter);
+            progress.sectionCompleted(1, 1);
+        } else {
+            List<Institucion> instituciones = institucionRepository.findAll();
+            // Un único GROUP BY para los resúmenes de todas las instituciones
+            Map<Long, Map<String, Long>> summaries = reportGenerator.generateCitaStatusSummaryByInstitucion();
+            int total = instituciones.size();
+            if (sectionLoader.isEnabledFor(total)) {
+                // En paralelo solo se leen las filas; la tabla se arma y vuelca en este hilo
+                sectionLoader.<CitaResumen>forEachInOrder(instituciones,
+                        inst -> citaRepository.streamForReport(
+                                inst.getId(), filter.estado(), filter.desde(), filter.hasta()),
+                        (i, inst, citas) -> {
+                            addSectionHeader(document, inst, ReportGenerator.summaryFor(summaries, inst.getId()));
+                            addDetail(document, citas);
+                            progress.sectionCompleted(i + 1, total);
+                            if (i < total - 1) document.newPage();
+                        });
             } else {
-                List<Institucion> instituciones = institucionRepository.findAll();
-                for (int i = 0; i < instituciones.size(); i++) {
-                    addInstitutionSection(document, instituciones.get(i));
+                for (int i = 0; i < total; i++) {
+                    Institucion inst = instituciones.get(i);
+                    addInstitutionSection(document, inst, ReportGenerator.summaryFor(summaries, inst.getId()), filter);
+                    progress.sectionCompleted(i + 1, total);
                     // Crea una nueva página entre instituciones, excepto al final
-                    if (i < instituciones.size() - 1) document.newPage();
+                    if (i < total - 1) document.newPage();
                 }
             }
-            document.close();
-            return baos.toByteArray();
+            if (instituciones.isEmpty()) {
+                document.add(new Paragraph("No hay instituciones registradas.", H2));
+            }
         }
+        document.close();
     }
 
-    // Copia aquí el método addInstitutionSection() y cualquier otro método usado para PDF
-    private void addInstitutionSection(@SuppressWarnings("unused") Document doc, @SuppressWarnings("unused") Institucion institucion) {
-        // … (toda la lógica para crear las tablas y contenido del PDF)
+    private void addInstitutionSection(Document doc, Institucion inst, Map<String, Long> summary,
+                                    ReportFilter filter) throws DocumentException {
+        if (inst == null) {
+            doc.add(new Paragraph("Institución no encontrada.", H2));
+            return;
+        }
+        addSectionHeader(doc, inst, summary);
+        try (Stream<CitaResumen> citas = citaRepository.streamForReport(
+                inst.getId(), filter.estado(), filter.desde(), filter.hasta())) {
+            addDetail(doc, citas.iterator());
+        }
     }
+
+    /** Agrega la tabla de detalle volcándola al documento cada {@link #ROWS_PER_CHUNK} filas. */
+    private void addDetail(Document doc, Iterator<? extends CitaResumen> it) throws DocumentException {
+        // Tabla de detalles: incompleta hasta el final para poder volcarla por bloques
+        PdfPTable tbl = newDetailTable();
+        tbl.setComplete(false);
+
+        int pending = 0;
+        while (it.hasNext()) {
+            addDetailRow(tbl, it.next());
+
+            // doc.add escribe las filas completas y las elimina de la tabla
+            if (++pending == ROWS_PER_CHUNK) {
+                doc.add(tbl);
+                pending = 0;
+            }
+        }
+
+        tbl.setComplete(true);
+        doc.add(tbl);
+    }
+
+    /** Título, resumen por estado y encabezado del detalle. */
+    private void addSectionHeader(Document doc, Institucion inst, Map<String, Long> summary) throws DocumentException {
+        // Titulo
+        doc.add(new Paragraph("Reporte de citas para " + nullSafe(inst.getNombre()), H1));
+        doc.add(new Paragraph(" ", H2));
+
+        PdfPTable sum = new PdfPTable(2);
+        sum.setWidthPercentage(30);
+        sum.setWidths(new float[]{70, 30});
+        addHeader(sum, "Estado");
+        addHeader(sum, "Cantidad");
+        for (Map.Entry<String, Long> e : summary.entrySet()) {
+            addCell(sum, e.getKey());
+            addCell(sum, String.valueOf(e.getValue()));
+        }
+        doc.add(sum);
+
+        doc.add(new Paragraph(" ", H2));
+        doc.add(new Paragraph("Detalle", H2));
+        doc.add(new Paragraph(" ", H2));
+    }
+
+    private PdfPTable newDetailTable() throws DocumentException {
+        PdfPTable tbl = new PdfPTable(HEADERS.length);
+        tbl.setWidthPercentage(100);
+        tbl.setWidths(WIDTHS);
+        tbl.setHeaderRows(1);
+        for (String h : HEADERS) addHeader(tbl, h);
+        return tbl;
+    }
+
+    private void addDetailRow(PdfPTable tbl, CitaResumen c) {
+        addCell(tbl, String.valueOf(c.getId()));
+        addCell(tbl, c.getFechaCita() != null ? c.getFechaCita().format(DATE_FORMATTER) : "-");
+        addCell(tbl, c.getHoraCita() != null ? c.getHoraCita().format(TIME_FORMATTER) : "-");
+        addCell(tbl, nullSafe(c.getNombreAgenda()));
+        addCell(tbl, nullSafe(c.getCorreoAgenda()));
+        addCell(tbl, nullSafe(c.getTelefonoAgenda()));
+        addCell(tbl, String.valueOf(c.getCantidadCitas()));
+        addCell(tbl, EstadoCita.etiquetaDe(c.getEstado()));
+    }
+
+    private void addHeader(PdfPTable table, String text) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, TH));
+        cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+        cell.setPadding(5f);
+        table.addCell(cell);
+    }
+
+    private void addCell(PdfPTable table, String text) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, TD));
+        cell.setPadding(5f);
+        table.addCell(cell);
+    }
+
+    private String nullSafe(String s) { return s == null ? "" : s; }
 }
@@ -0,0 +1,142 @@
+package com.example.colegiosapp.report;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reportes completos (sin filtros) pregenerados en disco, uno por formato y alcance
+ * (una institución o todas). El nombre del archivo lleva la huella de los datos con la
+ * que se generó ({@link ReportDataVersion#fingerprint}), guardada en la base de datos:
+ * los archivos siguen sirviendo tras reiniciar y varias instancias pueden compartir el
+ * directorio, porque todas calculan el mismo nombre para los mismos datos.
+ *
+ * <p>Un archivo se lee abriéndolo ({@link #open}) antes de comprobar nada más, y solo se
+ * borran los de huellas que ya no son las vigentes; el lector que ya lo abrió termina
+ * de copiarlo aunque otra instancia lo borre. Si el sistema no permite borrar un
+ * archivo abierto, se reintenta al publicar el siguiente.
+ */
+@Component
+public class ReportArtifactStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportArtifactStore.class);
+
+    /** Antigüedad a partir de la cual un temporal se considera de una generación interrumpida. */
+    private static final Duration TEMPORAL_ABANDONADO = Duration.ofDays(1);
+
+    private final Path directorio;
+
+    public ReportArtifactStore(
+            @Value("${reportes.pregeneracion.directorio:${java.io.tmpdir}/colegios-reportes}") String directorio) {
+        this.directorio = Path.of(directorio);
+        try {
+            Files.createDirectories(this.directorio);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de reportes " + directorio, e);
+        }
+        borrarTemporalesAbandonados();
+    }
+
+    /** Escribe un reporte en el flujo indicado. */
+    @FunctionalInterface
+    public interface ArtifactWriter {
+        void write(OutputStream out) throws Exception;
+    }
+
+    /** Indica si ya está generado el reporte para esa huella de los datos. */
+    public boolean exists(String formato, Long institucionId, String huella) {
+        return Files.isRegularFile(directorio.resolve(nombre(formato, institucionId, huella)));
+    }
+
+    /**
+     * Abre el reporte para esa huella de los datos, o devuelve null si no se ha
+     * generado. El flujo abierto sigue siendo legible aunque el archivo se borre después.
+     */
+    public InputStream open(String formato, Long institucionId, String huella) throws IOException {
+        try {
+            return Files.newInputStream(directorio.resolve(nombre(formato, institucionId, huella)));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Genera el reporte en un archivo temporal y lo publica con su nombre definitivo al
+     * terminar, así nunca se sirve a medio escribir.
+     */
+    public void store(String formato, Long institucionId, String huella, ArtifactWriter writer) throws Exception {
+        Path temporal = Files.createTempFile(directorio, "generando_", "." + formato);
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporal))) {
+                writer.write(out);
+            }
+            Path archivo = directorio.resolve(nombre(formato, institucionId, huella));
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Borra los reportes del formato y alcance generados con otras huellas. Debe
+     * llamarse con la huella vigente leída de la base de datos, no con la del reporte
+     * recién guardado: otra instancia puede haber publicado ya uno más nuevo.
+     */
+    public void retainOnly(String formato, Long institucionId, String huellaVigente) {
+        String vigente = nombre(formato, institucionId, huellaVigente);
+        try (DirectoryStream<Path> anteriores = Files.newDirectoryStream(directorio, prefijo(institucionId) + "*." + formato)) {
+            for (Path anterior : anteriores) {
+                if (!anterior.getFileName().toString().equals(vigente)) {
+                    borrar(anterior);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("No se pudieron listar los reportes pregenerados de {}", directorio, e);
+        }
+    }
+
+    private void borrarTemporalesAbandonados() {
+        Instant limite = Instant.now().minus(TEMPORAL_ABANDONADO);
+        try (DirectoryStream<Path> temporales = Files.newDirectoryStream(directorio, "generando_*")) {
+            for (Path temporal : temporales) {
+                // Los recientes pueden ser de otra instancia que comparte el directorio
+                if (Files.getLastModifiedTime(temporal).toInstant().isBefore(limite)) {
+                    borrar(temporal);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("No se pudieron revisar los temporales de reportes de {}", directorio, e);
+        }
+    }
+
+    private static void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            // Abierto por un lector en sistemas que no lo permiten: se borrará más adelante
+            log.debug("No se pudo borrar {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    private static String prefijo(Long institucionId) {
+        return "reporte_" + (institucionId != null ? institucionId : "todas") + "_v";
+    }
+
+    private static String nombre(String formato, Long institucionId, String huella) {
+        return prefijo(institucionId) + huella + "." + formato;
+    }
+}
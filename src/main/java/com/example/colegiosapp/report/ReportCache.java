@@ -0,0 +1,157 @@
+package com.example.colegiosapp.report;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Caché LRU de reportes ya generados, limitada por el total de bytes almacenados.
+ * La clave incluye la versión de datos de la institución ({@link ReportDataVersion}),
+ * así que una cita nueva o modificada deja obsoletas las entradas anteriores sin
+ * necesidad de borrarlas: simplemente dejan de consultarse y el LRU las desaloja.
+ * Los reportes más grandes que {@code reportes.cache.max-entry-bytes} no se guardan.
+ */
+@Component
+public class ReportCache {
+
+    /** Identifica un reporte concreto sobre una versión concreta de los datos. */
+    public record Key(String format, Long institucionId, ReportFilter filter, long version) { }
+
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private long currentBytes;
+
+    private final Counter hits;
+    private final Counter fileHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ReportCache(@Value("${reportes.cache.max-bytes:67108864}") long maxBytes,
+                    @Value("${reportes.cache.max-entry-bytes:8388608}") int maxEntryBytes,
+                    MeterRegistry registry) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.hits = Counter.builder("reportes.cache.requests").tag("result", "hit").register(registry);
+        this.fileHits = Counter.builder("reportes.cache.requests").tag("result", "archivo").register(registry);
+        this.misses = Counter.builder("reportes.cache.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("reportes.cache.evictions").register(registry);
+        Gauge.builder("reportes.cache.size.bytes", this, ReportCache::sizeInBytes).register(registry);
+        Gauge.builder("reportes.cache.entries", this, ReportCache::entryCount).register(registry);
+    }
+
+    /**
+     * Devuelve el reporte en caché o null. Aquí solo se contabilizan los aciertos: si no
+     * está, quien llama registra cómo lo sirvió ({@link #recordFileHit()} o
+     * {@link #recordMiss()}).
+     */
+    public byte[] get(Key key) {
+        byte[] data;
+        synchronized (this) {
+            data = entries.get(key);
+        }
+        if (data != null) {
+            hits.increment();
+        }
+        return data;
+    }
+
+    /** Reporte que no estaba en memoria pero se sirvió desde un archivo pregenerado. */
+    public void recordFileHit() {
+        fileHits.increment();
+    }
+
+    /** Reporte que hubo que generar. */
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void put(Key key, byte[] data) {
+        if (data.length > maxEntryBytes) {
+            return;
+        }
+        synchronized (this) {
+            byte[] previous = entries.put(key, data);
+            currentBytes += data.length - (previous != null ? previous.length : 0);
+            Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                Map.Entry<Key, byte[]> eldest = it.next();
+                if (eldest.getKey().equals(key)) continue;
+                currentBytes -= eldest.getValue().length;
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Envuelve el flujo de salida para copiar lo escrito mientras no supere el tamaño
+     * máximo de entrada. Al terminar, {@link CachingOutputStream#store()} guarda la copia.
+     */
+    public CachingOutputStream tee(Key key, OutputStream out) {
+        return new CachingOutputStream(key, out);
+    }
+
+    public synchronized long sizeInBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    public final class CachingOutputStream extends FilterOutputStream {
+
+        private final Key key;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private CachingOutputStream(Key key, OutputStream out) {
+            super(out);
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit() {
+            // Demasiado grande para la caché: se deja de copiar y solo se transmite
+            if (copy.size() > maxEntryBytes) {
+                copy = null;
+            }
+        }
+
+        /** Guarda en la caché lo escrito, si no superó el límite. */
+        public void store() {
+            if (copy != null) {
+                put(key, copy.toByteArray());
+                copy = null;
+            }
+        }
+    }
+}
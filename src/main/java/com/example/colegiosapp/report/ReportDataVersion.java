@@ -0,0 +1,86 @@
+package com.example.colegiosapp.report;
+
+import java.util.Collection;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Versión de los datos de cada institución usada para invalidar reportes en caché y
+ * pregenerados. Cada escritura sobre una cita incrementa la versión de su institución
+ * en la misma transacción (tabla {@code institucion_data_versions}), así que un cambio
+ * hecho en una instancia invalida las cachés de todas y las versiones no se reinician
+ * con la aplicación. La versión global (reportes de todas las instituciones) es la suma
+ * de todas. También se guarda cuándo cambió cada una, para saber si una réplica de
+ * lectura ya tiene esos cambios.
+ *
+ * <p>Se lee siempre de la primaria: fuera de una transacción de solo lectura.
+ */
+@Component
+public class ReportDataVersion {
+
+    /** Fila de los cambios que no son de una institución concreta. */
+    static final long SIN_INSTITUCION = 0L;
+
+    private static final String BUMP = "INSERT INTO institucion_data_versions (id_colegio, version, modificada_en) "
+            + "VALUES (?, 1, ?) ON DUPLICATE KEY UPDATE version = version + 1, modificada_en = VALUES(modificada_en)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReportDataVersion(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Versión actual de la institución, o la global si {@code institucionId} es null. */
+    public long current(Long institucionId) {
+        Long version = institucionId == null
+                ? jdbcTemplate.queryForObject("SELECT COALESCE(SUM(version), 0) FROM institucion_data_versions", Long.class)
+                : jdbcTemplate.query("SELECT version FROM institucion_data_versions WHERE id_colegio = ?",
+                        rs -> rs.next() ? rs.getLong(1) : 0L, institucionId);
+        return version != null ? version : 0L;
+    }
+
+    /** Momento (epoch ms) del último cambio de la institución, o de cualquiera si es null. */
+    public long lastModified(Long institucionId) {
+        Long modificada = institucionId == null
+                ? jdbcTemplate.queryForObject("SELECT COALESCE(MAX(modificada_en), 0) FROM institucion_data_versions", Long.class)
+                : jdbcTemplate.query("SELECT modificada_en FROM institucion_data_versions WHERE id_colegio = ?",
+                        rs -> rs.next() ? rs.getLong(1) : 0L, institucionId);
+        return modificada != null ? modificada : 0L;
+    }
+
+    /**
+     * Huella de los datos de la institución, o de todos si es null: la versión y el
+     * momento del último cambio. Se guarda en la base de datos, así sirve para nombrar
+     * los reportes pregenerados en disco aunque la aplicación se reinicie o haya varias
+     * instancias.
+     */
+    public String fingerprint(Long institucionId) {
+        String huella = institucionId == null
+                ? jdbcTemplate.queryForObject("SELECT COALESCE(SUM(version), 0), COALESCE(MAX(modificada_en), 0) "
+                        + "FROM institucion_data_versions", (rs, i) -> rs.getLong(1) + "-" + rs.getLong(2))
+                : jdbcTemplate.query("SELECT version, modificada_en FROM institucion_data_versions WHERE id_colegio = ?",
+                        rs -> rs.next() ? rs.getLong(1) + "-" + rs.getLong(2) : null, institucionId);
+        return huella != null ? huella : "0-0";
+    }
+
+    /**
+     * Marca como modificados los datos de la institución (y, por tanto, los globales).
+     * Dentro de una transacción, el cambio se publica con ella.
+     */
+    @Transactional
+    public void bump(Long institucionId) {
+        jdbcTemplate.update(BUMP, institucionId != null ? institucionId : SIN_INSTITUCION, System.currentTimeMillis());
+    }
+
+    /** Igual que {@link #bump(Long)} para varias instituciones, en un solo lote. */
+    @Transactional
+    public void bump(Collection<Long> institucionIds) {
+        long ahora = System.currentTimeMillis();
+        jdbcTemplate.batchUpdate(BUMP, institucionIds, institucionIds.size(), (ps, id) -> {
+            ps.setLong(1, id);
+            ps.setLong(2, ahora);
+        });
+    }
+}
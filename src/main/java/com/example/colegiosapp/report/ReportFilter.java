@@ -0,0 +1,30 @@
+package com.example.colegiosapp.report;
+
+import java.time.LocalDate;
+
+import com.example.colegiosapp.entity.EstadoCita;
+
+/**
+ * Filtros opcionales del detalle de un reporte. Un valor null significa "sin filtro".
+ */
+public record ReportFilter(EstadoCita estado, LocalDate desde, LocalDate hasta) {
+
+    private static final ReportFilter NONE = new ReportFilter(null, null, null);
+
+    /**
+     * Filtro a partir de los parámetros de la petición; el estado se indica por su etiqueta.
+     * @throws IllegalArgumentException si el estado no existe.
+     */
+    public static ReportFilter of(String estado, LocalDate desde, LocalDate hasta) {
+        return new ReportFilter(EstadoCita.deEtiqueta(estado), desde, hasta);
+    }
+
+    /** Filtro vacío: incluye todas las citas. */
+    public static ReportFilter none() {
+        return NONE;
+    }
+
+    public boolean isEmpty() {
+        return estado == null && desde == null && hasta == null;
+    }
+}
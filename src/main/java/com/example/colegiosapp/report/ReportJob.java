@@ -0,0 +1,137 @@
+package com.example.colegiosapp.report;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Trabajo de generación de un reporte en segundo plano. Guarda el estado y el avance
+ * que se consultan desde la interfaz, y la ruta del archivo generado al terminar.
+ */
+public class ReportJob {
+
+    public enum Status { PENDIENTE, EN_PROCESO, COMPLETADO, ERROR }
+
+    /** Texto del error que ve el usuario; la causa queda en el log. */
+    static final String ERROR_GENERICO = "No se pudo generar el reporte, intente de nuevo más tarde";
+
+    private final String id = UUID.randomUUID().toString();
+    private final String format;
+    private final Long institucionId;
+    private final ReportFilter filter;
+    private final String contentType;
+    private final String filename;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Status status = Status.PENDIENTE;
+    private volatile int progress;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile long size;
+    private volatile Path artifact;
+    private final AtomicInteger descargas = new AtomicInteger();
+
+    public ReportJob(String format, Long institucionId, ReportFilter filter, String contentType, String filename) {
+        this.format = format;
+        this.institucionId = institucionId;
+        this.filter = filter;
+        this.contentType = contentType;
+        this.filename = filename;
+    }
+
+    void markRunning() {
+        status = Status.EN_PROCESO;
+    }
+
+    void updateProgress(int completed, int total) {
+        // El 100 % se reserva para cuando el archivo está escrito por completo
+        progress = total <= 0 ? 99 : Math.min(99, completed * 100 / total);
+    }
+
+    void markCompleted(Path file, long bytes) {
+        artifact = file;
+        size = bytes;
+        progress = 100;
+        finishedAt = Instant.now();
+        status = Status.COMPLETADO;
+    }
+
+    void markFailed() {
+        error = ERROR_GENERICO;
+        finishedAt = Instant.now();
+        status = Status.ERROR;
+    }
+
+    void descargaIniciada() {
+        descargas.incrementAndGet();
+    }
+
+    void descargaTerminada() {
+        descargas.decrementAndGet();
+    }
+
+    /** Indica si hay descargas del archivo en curso. */
+    boolean isDescargando() {
+        return descargas.get() > 0;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETADO || status == Status.ERROR;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public Long getInstitucionId() {
+        return institucionId;
+    }
+
+    public ReportFilter getFilter() {
+        return filter;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @JsonIgnore
+    public Path getArtifact() {
+        return artifact;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.colegiosapp.report;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ejecuta los trabajos de reportes fuera del hilo de la petición HTTP. Cada trabajo
+ * corre en un hilo virtual, pero solo {@code reportes.jobs.max-concurrent} generan a la
+ * vez; el resto espera su turno. Si hay más de {@code reportes.jobs.max-pending}
+ * trabajos sin terminar, los nuevos se rechazan. Los archivos generados se guardan en
+ * disco temporal y se eliminan cuando vence {@code reportes.jobs.retention}, salvo
+ * mientras se estén descargando. Si un trabajo falla, el usuario ve un mensaje genérico
+ * y la causa queda en el log.
+ */
+@Component
+public class ReportJobManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportJobManager.class);
+
+    /** Escribe el reporte de un trabajo en el archivo indicado. */
+    @FunctionalInterface
+    public interface ReportTask {
+        void write(OutputStream out, ReportProgress progress) throws Exception;
+    }
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("report-job-", 0).factory());
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final Semaphore slots;
+    private final int maxPending;
+    private final Duration retention;
+
+    public ReportJobManager(@Value("${reportes.jobs.max-concurrent:2}") int maxConcurrent,
+                            @Value("${reportes.jobs.max-pending:50}") int maxPending,
+                            @Value("${reportes.jobs.retention:PT1H}") Duration retention) {
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.maxPending = maxPending;
+        this.retention = retention;
+    }
+
+    /**
+     * Encola el trabajo y devuelve de inmediato.
+     * @throws RejectedExecutionException si la cola está llena.
+     */
+    public ReportJob submit(ReportJob job, ReportTask task) {
+        if (unfinished.incrementAndGet() > maxPending) {
+            unfinished.decrementAndGet();
+            throw new RejectedExecutionException("Hay demasiados reportes en cola, intente más tarde");
+        }
+        jobs.put(job.getId(), job);
+        executor.execute(() -> run(job, task));
+        return job;
+    }
+
+    public Optional<ReportJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(ReportJob job, ReportTask task) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Trabajo de reporte {} interrumpido antes de empezar", job.getId());
+            job.markFailed();
+            unfinished.decrementAndGet();
+            return;
+        }
+        Path file = null;
+        try {
+            job.markRunning();
+            file = Files.createTempFile("reporte-" + job.getId() + "-", "." + extensionOf(job.getFilename()));
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                task.write(out, job::updateProgress);
+            }
+            job.markCompleted(file, Files.size(file));
+        } catch (Exception e) {
+            log.error("Error generando el reporte {} ({})", job.getId(), job.getFormat(), e);
+            job.markFailed();
+            deleteQuietly(file);
+        } finally {
+            slots.release();
+            unfinished.decrementAndGet();
+        }
+    }
+
+    /**
+     * Abre el archivo de un trabajo completado para descargarlo. Mientras el flujo siga
+     * abierto, {@link #purgeExpired()} no borra el trabajo; si el archivo se borra igual
+     * (otra limpieza a la vez), el flujo abierto sigue siendo legible.
+     * @throws java.nio.file.NoSuchFileException si el archivo ya se eliminó.
+     */
+    public InputStream openArtifact(ReportJob job) throws IOException {
+        job.descargaIniciada();
+        InputStream in;
+        try {
+            in = Files.newInputStream(job.getArtifact());
+        } catch (IOException | RuntimeException e) {
+            job.descargaTerminada();
+            throw e;
+        }
+        AtomicBoolean cerrado = new AtomicBoolean();
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (cerrado.compareAndSet(false, true)) {
+                        job.descargaTerminada();
+                    }
+                }
+            }
+        };
+    }
+
+    /** Elimina los trabajos terminados (y sus archivos) cuya retención ha vencido y que no se están descargando. */
+    @Scheduled(fixedDelayString = "${reportes.jobs.cleanup-interval:PT5M}")
+    public void purgeExpired() {
+        Instant limit = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.isFinished() && job.getFinishedAt().isBefore(limit) && !job.isDescargando()) {
+                deleteQuietly(job.getArtifact());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        jobs.values().forEach(job -> deleteQuietly(job.getArtifact()));
+    }
+
+    private static String extensionOf(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot + 1) : "bin";
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("No se pudo eliminar el archivo temporal {}", file, e);
+        }
+    }
+}
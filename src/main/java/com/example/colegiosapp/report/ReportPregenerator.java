@@ -0,0 +1,145 @@
+package com.example.colegiosapp.report;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.repository.InstitucionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pregenera de madrugada los reportes completos (sin filtros) del día anterior: el de
+ * todas las instituciones y el de cada una, en los formatos de
+ * {@code reportes.pregeneracion.formatos}. Empieza con {@code reportes.pregeneracion.cron}
+ * y no inicia reportes nuevos pasada la hora {@code reportes.pregeneracion.hasta}. Los
+ * reportes cuyos datos no cambiaron desde la última ejecución no se regeneran.
+ *
+ * <p>La generación corre en un hilo propio y no en el de las tareas programadas, que
+ * así siguen limpiando sesiones, tokens y trabajos de reportes durante horas de
+ * pregeneración. Si la ejecución anterior aún no terminó, no se inicia otra.
+ *
+ * <p>Métrica {@code reportes.pregenerados} por formato y resultado.
+ */
+@Component
+@ConditionalOnProperty(name = "reportes.pregeneracion.enabled", havingValue = "true", matchIfMissing = true)
+public class ReportPregenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportPregenerator.class);
+
+    private final ReportService reportService;
+    private final InstitucionRepository institucionRepository;
+    private final MeterRegistry meterRegistry;
+    private final List<String> formatos;
+    private final LocalTime hasta;
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().name("reporte-pregeneracion").daemon().factory());
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    public ReportPregenerator(ReportService reportService,
+                            InstitucionRepository institucionRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${reportes.pregeneracion.formatos:excel,pdf,csv}") List<String> formatos,
+                            @Value("${reportes.pregeneracion.hasta:05:30}") LocalTime hasta) {
+        this.reportService = reportService;
+        this.institucionRepository = institucionRepository;
+        this.meterRegistry = meterRegistry;
+        this.formatos = formatos;
+        this.hasta = hasta;
+    }
+
+    /** Lanza la pregeneración en su hilo y vuelve de inmediato. */
+    @Scheduled(cron = "${reportes.pregeneracion.cron:0 30 0 * * *}")
+    public void programar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            log.warn("La pregeneración anterior sigue en curso, no se inicia otra");
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    pregenerar();
+                } catch (RuntimeException e) {
+                    log.error("Falló la pregeneración de reportes", e);
+                } finally {
+                    enCurso.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rechazada al cerrar la aplicación
+            enCurso.set(false);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** @return reportes generados en esta ejecución. */
+    public int pregenerar() {
+        LocalDateTime inicio = LocalDateTime.now();
+        // Si la ventana cruza la medianoche (p. ej. de 23:00 a 05:30), termina al día siguiente
+        LocalDateTime limite = inicio.toLocalDate().atTime(hasta);
+        if (!limite.isAfter(inicio)) {
+            limite = limite.plusDays(1);
+        }
+
+        List<Long> alcances = new ArrayList<>();
+        alcances.add(null);
+        for (Institucion institucion : institucionRepository.findAll()) {
+            alcances.add(institucion.getId());
+        }
+
+        int generados = 0;
+        int alDia = 0;
+        int pendientes = alcances.size() * formatos.size();
+        for (Long institucionId : alcances) {
+            for (String formato : formatos) {
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("Pregeneración interrumpida al cerrar: {} reportes quedaron sin generar", pendientes);
+                    return generados;
+                }
+                if (LocalDateTime.now().isAfter(limite)) {
+                    log.warn("Terminó la ventana de pregeneración ({}): {} reportes quedaron sin generar",
+                            hasta, pendientes);
+                    return generados;
+                }
+                pendientes--;
+                String resultado;
+                try {
+                    if (reportService.pregenerate(formato, institucionId)) {
+                        generados++;
+                        resultado = "generado";
+                    } else {
+                        alDia++;
+                        resultado = "omitido";
+                    }
+                } catch (Exception e) {
+                    resultado = "error";
+                    log.error("Error pregenerando el reporte {} de {}", formato,
+                            institucionId != null ? "la institución " + institucionId : "todas las instituciones", e);
+                }
+                meterRegistry.counter("reportes.pregenerados", "formato", formato, "resultado", resultado).increment();
+            }
+        }
+        log.info("Reportes pregenerados: {} nuevos, {} sin cambios o pendientes de las réplicas, en {}",
+                generados, alDia, Duration.between(inicio, LocalDateTime.now()));
+        return generados;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.colegiosapp.report;
+
+/**
+ * Recibe el avance de una estrategia mientras genera un reporte. Se notifica al
+ * terminar cada sección (una por institución).
+ */
+@FunctionalInterface
+public interface ReportProgress {
+
+    /** Implementación que ignora el avance, para las descargas síncronas. */
+    ReportProgress NONE = (completed, total) -> { };
+
+    void sectionCompleted(int completed, int total);
+}
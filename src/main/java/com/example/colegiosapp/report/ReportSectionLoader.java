@@ -0,0 +1,299 @@
+package com.example.colegiosapp.report;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.colegiosapp.entity.Institucion;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Lee en paralelo el detalle por institución de los reportes de todas las
+ * instituciones. Cada sección se consulta en un hilo del pool con su propia
+ * transacción de solo lectura y sus filas pasan al escritor por una cola acotada, en
+ * bloques de {@link #CHUNK_ROWS}; el escritor recorre las secciones siempre en el orden
+ * de la lista, por lo que el documento resultante es el mismo que en modo secuencial.
+ *
+ * <p>El pool es compartido por todos los reportes y su tamaño ({@code reportes.parallel.threads},
+ * o la mitad del pool de conexiones si vale 0) limita las conexiones que ocupan las
+ * secciones. Cada reporte adelanta como mucho ese número de secciones y cada una
+ * retiene como mucho {@link #QUEUED_CHUNKS} bloques mientras espera al escritor, así
+ * que la memoria usada no depende del número de citas ni de instituciones. Con hilos
+ * virtuales activados el pool es de hilos virtuales, con el mismo tamaño: las secciones
+ * empiezan en el orden en que se piden y una sección que espera al escritor nunca
+ * bloquea a la que él está leyendo.
+ */
+@Component
+public class ReportSectionLoader {
+
+    /** Filas por bloque entregado al escritor. */
+    static final int CHUNK_ROWS = 200;
+
+    /** Bloques leídos que una sección retiene mientras el escritor no llega a ella. */
+    static final int QUEUED_CHUNKS = 2;
+
+    /** Abre el flujo de filas de una sección; se recorre dentro de una transacción. */
+    @FunctionalInterface
+    public interface SectionSource<R> {
+        Stream<R> open(Institucion institucion) throws Exception;
+    }
+
+    /**
+     * Escribe una sección; se invoca en orden desde el hilo del reporte. Las filas
+     * llegan a medida que se leen y deben recorrerse hasta el final.
+     */
+    @FunctionalInterface
+    public interface SectionWriter<R> {
+        void write(int index, Institucion institucion, Iterator<R> rows) throws Exception;
+    }
+
+    private static final List<Object> END = new ArrayList<>(0);
+
+    private final boolean enabled;
+    private final int threads;
+    private final ExecutorService executor;
+    private final TransactionTemplate readOnlyTx;
+
+    public ReportSectionLoader(@Value("${reportes.parallel.enabled:true}") boolean enabled,
+                            @Value("${reportes.parallel.threads:0}") int threads,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                            DataSource dataSource,
+                            PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.threads = threads > 0 ? threads : Math.max(1, connectionPoolSize(dataSource) / 2);
+        ThreadFactory factory;
+        if (virtualThreads) {
+            factory = Thread.ofVirtual().name("report-section-", 0).factory();
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            factory = r -> {
+                Thread t = new Thread(r, "report-section-" + counter.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            };
+        }
+        // Cola FIFO: una sección solo espera a otras que empezaron antes que ella
+        this.executor = Executors.newFixedThreadPool(this.threads, factory);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    private static int connectionPoolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (Exception e) {
+            // Sin acceso al pool: se usa el tamaño por defecto de Hikari
+        }
+        return 10;
+    }
+
+    /** Indica si conviene usar el modo paralelo para la cantidad de secciones dada. */
+    public boolean isEnabledFor(int sections) {
+        return enabled && threads > 1 && sections > 1;
+    }
+
+    /**
+     * Lee las secciones en paralelo y las entrega a {@code writer} en el orden de
+     * {@code instituciones}. Si una sección falla se cancelan las pendientes y se
+     * propaga el error original.
+     */
+    public <R> void forEachInOrder(List<Institucion> instituciones, SectionSource<R> source,
+                                SectionWriter<R> writer) throws Exception {
+        Deque<Section<R>> pending = new ArrayDeque<>();
+        Section<R> current = null;
+        int next = 0;
+        try {
+            for (int i = 0; i < instituciones.size(); i++) {
+                while (next < instituciones.size() && pending.size() < threads) {
+                    Institucion inst = instituciones.get(next++);
+                    Section<R> section = new Section<>();
+                    section.future = executor.submit(() -> read(source, inst, section));
+                    pending.addLast(section);
+                }
+                current = pending.removeFirst();
+                try {
+                    writer.write(i, instituciones.get(i), current);
+                } catch (SectionException e) {
+                    throw (Exception) e.getCause();
+                }
+                if (!current.terminada) {
+                    throw new IllegalStateException("La sección " + i + " no se recorrió completa");
+                }
+                try {
+                    current.future.get();
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                }
+                current = null;
+            }
+        } finally {
+            if (current != null) {
+                current.cancel();
+            }
+            for (Section<R> s : pending) {
+                s.cancel();
+            }
+        }
+    }
+
+    /** Recorre las filas de la sección y las encola por bloques; bloquea si el escritor va atrasado. */
+    private <R> Void read(SectionSource<R> source, Institucion inst, Section<R> section) throws Exception {
+        BlockingQueue<List<R>> chunks = section.chunks;
+        try {
+            readOnlyTx.execute(status -> {
+                try (Stream<R> rows = source.open(inst)) {
+                    List<R> chunk = new ArrayList<>(CHUNK_ROWS);
+                    Iterator<R> it = rows.iterator();
+                    while (it.hasNext()) {
+                        chunk.add(it.next());
+                        if (chunk.size() == CHUNK_ROWS) {
+                            chunks.put(chunk);
+                            chunk = new ArrayList<>(CHUNK_ROWS);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        chunks.put(chunk);
+                    }
+                    return null;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new SectionException(e);
+                }
+            });
+        } catch (SectionException e) {
+            throw (Exception) e.getCause();
+        } finally {
+            end(section);
+        }
+        return null;
+    }
+
+    /**
+     * Encola el fin de la sección. Si se canceló, nadie volverá a leer la cola: se vacía
+     * en lugar de esperar, para no dejar bloqueado el hilo del pool.
+     */
+    private static <R> void end(Section<R> section) {
+        boolean puesto = false;
+        try {
+            while (!puesto && !section.cancelada) {
+                puesto = section.chunks.offer(end(), 1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            // Solo se interrumpe al cancelar o al cerrar el pool
+            Thread.currentThread().interrupt();
+        }
+        if (!puesto) {
+            section.chunks.clear();
+            section.chunks.offer(end());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> end() {
+        return (List<R>) (List<?>) END;
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception ex) {
+            return ex;
+        }
+        if (cause instanceof Error err) {
+            throw err;
+        }
+        return e;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Una sección en lectura: su cola de bloques, recorrida por el escritor como iterador. */
+    private static final class Section<R> implements Iterator<R> {
+
+        final BlockingQueue<List<R>> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+        Future<Void> future;
+        volatile boolean cancelada;
+        boolean terminada;
+        private Iterator<R> chunk;
+
+        /** Cancela la lectura; el hilo del pool deja de esperar al escritor. */
+        void cancel() {
+            cancelada = true;
+            future.cancel(true);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (chunk == null || !chunk.hasNext()) {
+                if (terminada) {
+                    return false;
+                }
+                List<R> siguiente = take();
+                if (siguiente == END) {
+                    terminada = true;
+                    return false;
+                }
+                chunk = siguiente.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.next();
+        }
+
+        private List<R> take() {
+            try {
+                List<R> siguiente;
+                while ((siguiente = chunks.poll(1, TimeUnit.SECONDS)) == null) {
+                    // Cancelada o rechazada sin llegar a leer: no llegará ningún bloque
+                    if (future.isDone() && chunks.isEmpty()) {
+                        return end();
+                    }
+                }
+                return siguiente;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SectionException(e);
+            }
+        }
+    }
+
+    /** Transporta una excepción comprobada a través de los callbacks. */
+    private static final class SectionException extends RuntimeException {
+        SectionException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -1,27 +1,266 @@
 package com.example.colegiosapp.report;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import com.example.colegiosapp.datasource.ReplicaRoutingDataSource;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Punto de entrada de la generación de reportes: elige la estrategia, sirve desde la
+ * caché cuando se puede y registra las métricas {@code reportes.generacion} (duración
+ * por formato, alcance, caché y resultado), {@code reportes.tamano} (bytes) y
+ * {@code reportes.en-curso} (generaciones en curso por formato).
+ */
 @Service
 public class ReportService {
 
     private final ReportStrategy excelReportStrategy;
     private final ReportStrategy pdfReportStrategy;
+    private final ReportStrategy csvReportStrategy;
+    private final ReportStrategy ndjsonReportStrategy;
+    private final ReportJobManager jobManager;
+    private final ReportCache reportCache;
+    private final ReportArtifactStore artifactStore;
+    private final ReportDataVersion dataVersion;
+    private final MeterRegistry meterRegistry;
+    private final ReplicaRoutingDataSource replicas;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> sizes = new ConcurrentHashMap<>();
 
     public ReportService(@Qualifier("excelReportStrategy") ReportStrategy excelReportStrategy,
-                        @Qualifier("pdfReportStrategy") ReportStrategy pdfReportStrategy) {
+                        @Qualifier("pdfReportStrategy") ReportStrategy pdfReportStrategy,
+                        @Qualifier("csvReportStrategy") ReportStrategy csvReportStrategy,
+                        @Qualifier("ndjsonReportStrategy") ReportStrategy ndjsonReportStrategy,
+                        ReportJobManager jobManager,
+                        ReportCache reportCache,
+                        ReportArtifactStore artifactStore,
+                        ReportDataVersion dataVersion,
+                        MeterRegistry meterRegistry,
+                        DataSource dataSource) {
         this.excelReportStrategy = excelReportStrategy;
         this.pdfReportStrategy = pdfReportStrategy;
+        this.csvReportStrategy = csvReportStrategy;
+        this.ndjsonReportStrategy = ndjsonReportStrategy;
+        this.jobManager = jobManager;
+        this.reportCache = reportCache;
+        this.artifactStore = artifactStore;
+        this.dataVersion = dataVersion;
+        this.meterRegistry = meterRegistry;
+        this.replicas = replicaRouting(dataSource);
     }
 
-    public byte[] generateReport(String format, Long institucionId) throws Exception {
+    private static ReplicaRoutingDataSource replicaRouting(DataSource dataSource) {
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                return dataSource.unwrap(ReplicaRoutingDataSource.class);
+            }
+        } catch (Exception e) {
+            // Sin réplicas: todo se lee de la primaria
+        }
+        return null;
+    }
+
+    /** Devuelve la estrategia para el formato indicado (Excel por defecto). */
+    public ReportStrategy getStrategy(String format) {
         switch (format == null ? "excel" : format.toLowerCase()) {
             case "pdf":
-                return pdfReportStrategy.generateReport(institucionId);
+                return pdfReportStrategy;
+            case "csv":
+                return csvReportStrategy;
+            case "ndjson":
+                return ndjsonReportStrategy;
             case "excel":
             default:
-                return excelReportStrategy.generateReport(institucionId);
+                return excelReportStrategy;
+        }
+    }
+
+    /** Nombre del archivo descargable para la estrategia e institución indicadas. */
+    public String filenameFor(ReportStrategy strategy, Long institucionId) {
+        return (institucionId != null ? "reporte_citas_" + institucionId : "reporte_citas")
+                + "." + strategy.getFileExtension();
+    }
+
+    /**
+     * Genera el reporte completo en memoria.
+     * @return Reporte en formato binario (PDF/Excel/CSV, etc.).
+     */
+    public byte[] generateReport(String format, Long institucionId) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeReport(format, institucionId, baos);
+        return baos.toByteArray();
+    }
+
+    /** Escribe el reporte directamente en el flujo de salida, sin pasar por un byte[]. */
+    public void writeReport(String format, Long institucionId, OutputStream out) throws Exception {
+        writeReport(format, institucionId, ReportFilter.none(), out);
+    }
+
+    /** Igual que {@link #writeReport(String, Long, OutputStream)} aplicando filtros al detalle. */
+    public void writeReport(String format, Long institucionId, ReportFilter filter, OutputStream out) throws Exception {
+        writeCached(getStrategy(format), institucionId, filter != null ? filter : ReportFilter.none(),
+                out, ReportProgress.NONE);
+    }
+
+    /**
+     * Sirve el reporte desde la caché si los datos de la institución no han cambiado
+     * desde que se generó, o desde el archivo pregenerado si sigue al día (solo reportes
+     * sin filtros); si no, lo genera mientras se copia para la caché. Si las
+     * réplicas de lectura aún no tienen el último cambio de los datos, el reporte se
+     * sirve pero no se guarda, para no dejar en caché datos atrasados con la versión nueva.
+     */
+    private void writeCached(ReportStrategy strategy, Long institucionId, ReportFilter filter,
+                            OutputStream out, ReportProgress progress) throws Exception {
+        // La versión se lee antes de generar: si cambia durante la generación, la
+        // entrada queda asociada a la versión anterior y no se volverá a servir.
+        String formato = strategy.getFileExtension();
+        long version = dataVersion.current(institucionId);
+        ReportCache.Key key = new ReportCache.Key(formato, institucionId, filter, version);
+        Tags tags = Tags.of("formato", formato, "alcance", institucionId != null ? "institucion" : "todas");
+        Timer.Sample sample = Timer.start(meterRegistry);
+        byte[] cached = reportCache.get(key);
+        if (cached != null) {
+            out.write(cached);
+            progress.sectionCompleted(1, 1);
+            sample.stop(meterRegistry.timer("reportes.generacion", tags.and("cache", "hit", "resultado", "ok")));
+            recordSize(formato, cached.length);
+            return;
+        }
+        // Se abre antes de usarlo: si otra instancia lo reemplaza, la copia abierta sigue siendo legible
+        InputStream pregenerado = filter.isEmpty()
+                ? artifactStore.open(formato, institucionId, dataVersion.fingerprint(institucionId))
+                : null;
+        if (pregenerado != null) {
+            reportCache.recordFileHit();
+            long bytes;
+            try (InputStream in = pregenerado) {
+                bytes = in.transferTo(out);
+            }
+            progress.sectionCompleted(1, 1);
+            sample.stop(meterRegistry.timer("reportes.generacion", tags.and("cache", "archivo", "resultado", "ok")));
+            recordSize(formato, bytes);
+            return;
+        }
+        reportCache.recordMiss();
+        AtomicInteger enCurso = inFlight.computeIfAbsent(formato,
+                f -> meterRegistry.gauge("reportes.en-curso", Tags.of("formato", f), new AtomicInteger()));
+        enCurso.incrementAndGet();
+        String resultado = "error";
+        CountingOutputStream counted = new CountingOutputStream(out);
+        try {
+            if (replicasAlDia(institucionId)) {
+                ReportCache.CachingOutputStream tee = reportCache.tee(key, counted);
+                strategy.writeReport(institucionId, filter, tee, progress);
+                tee.flush();
+                tee.store();
+            } else {
+                strategy.writeReport(institucionId, filter, counted, progress);
+                counted.flush();
+            }
+            resultado = "ok";
+        } finally {
+            enCurso.decrementAndGet();
+            sample.stop(meterRegistry.timer("reportes.generacion", tags.and("cache", "miss", "resultado", resultado)));
+        }
+        recordSize(formato, counted.count);
+    }
+
+    /**
+     * Pregenera el reporte completo de la institución (o de todas si es null) para
+     * servirlo desde disco mientras sus datos no cambien.
+     * @return false si ya había un archivo al día o si las réplicas aún no tienen los
+     *         últimos cambios (se intentará en la próxima ejecución).
+     */
+    public boolean pregenerate(String format, Long institucionId) throws Exception {
+        ReportStrategy strategy = getStrategy(format);
+        String formato = strategy.getFileExtension();
+        String huella = dataVersion.fingerprint(institucionId);
+        if (artifactStore.exists(formato, institucionId, huella) || !replicasAlDia(institucionId)) {
+            return false;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String resultado = "error";
+        try {
+            artifactStore.store(formato, institucionId, huella,
+                    out -> strategy.writeReport(institucionId, ReportFilter.none(), out, ReportProgress.NONE));
+            resultado = "ok";
+        } finally {
+            sample.stop(meterRegistry.timer("reportes.pregeneracion", "formato", formato, "resultado", resultado));
+        }
+        // Con la huella vigente ahora, por si los datos cambiaron mientras se generaba
+        artifactStore.retainOnly(formato, institucionId, dataVersion.fingerprint(institucionId));
+        return true;
+    }
+
+    /** Indica si las réplicas de lectura (si las hay) ya tienen el último cambio de los datos. */
+    private boolean replicasAlDia(Long institucionId) {
+        return replicas == null || replicas.alDiaHasta() >= dataVersion.lastModified(institucionId);
+    }
+
+    private void recordSize(String formato, long bytes) {
+        sizes.computeIfAbsent(formato, f -> DistributionSummary.builder("reportes.tamano")
+                .baseUnit("bytes")
+                .tag("formato", f)
+                .register(meterRegistry))
+                .record(bytes);
+    }
+
+    /**
+     * Encola la generación del reporte en segundo plano y devuelve el trabajo creado,
+     * cuyo estado y avance se consultan con {@link #findJob(String)}.
+     */
+    public ReportJob submitJob(String format, Long institucionId, ReportFilter filter) {
+        ReportStrategy strategy = getStrategy(format);
+        ReportFilter f = filter != null ? filter : ReportFilter.none();
+        ReportJob job = new ReportJob(strategy.getFileExtension(), institucionId, f,
+                strategy.getContentType(), filenameFor(strategy, institucionId));
+        return jobManager.submit(job, (out, progress) -> writeCached(strategy, institucionId, f, out, progress));
+    }
+
+    public Optional<ReportJob> findJob(String id) {
+        return jobManager.find(id);
+    }
+
+    /** Abre el archivo de un trabajo completado; ver {@link ReportJobManager#openArtifact}. */
+    public InputStream openJobArtifact(ReportJob job) throws IOException {
+        return jobManager.openArtifact(job);
+    }
+
+    /** Cuenta los bytes escritos en el flujo de salida. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
         }
     }
 }
@@ -1,14 +1,27 @@
 package com.example.colegiosapp.report;
 
+import java.io.OutputStream;
+
 /**
  * Estrategia para generar reportes de citas de una institución.
+ * Las implementaciones son transaccionales (solo lectura) porque recorren las citas
+ * como flujo; se deben invocar a través del bean de Spring, no desde la propia clase.
  */
 public interface ReportStrategy {
     /**
-     * Genera el reporte para la institución indicada.
+     * Escribe el reporte directamente en el flujo indicado, sin acumularlo en memoria.
+     * El flujo no se cierra; lo gestiona quien lo abrió.
      * @param institucionId ID de la institución (puede ser null para incluir todas).
-     * @return Reporte en formato binario (PDF/Excel/CSV, etc.).
+     * @param filter filtros del detalle de citas.
+     * @param out destino del reporte (por ejemplo, la respuesta HTTP).
+     * @param progress recibe el avance por sección.
      * @throws Exception si ocurre un error durante la generación.
      */
-    byte[] generateReport(Long institucionId) throws Exception;
+    void writeReport(Long institucionId, ReportFilter filter, OutputStream out, ReportProgress progress) throws Exception;
+
+    /** Tipo MIME del reporte generado. */
+    String getContentType();
+
+    /** Extensión de archivo, sin punto (xlsx, pdf, csv...). */
+    String getFileExtension();
 }
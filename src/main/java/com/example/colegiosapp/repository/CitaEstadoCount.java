@@ -0,0 +1,14 @@
+package com.example.colegiosapp.repository;
+
+import com.example.colegiosapp.entity.EstadoCita;
+
+/**
+ * Total de citas de una institución en un estado: una fila de
+ * {@code cita_status_counts} ({@link CitaStatusTotal}) o del GROUP BY sobre citas con
+ * que se reconcilia.
+ */
+public interface CitaEstadoCount {
+    Long getInstitucionId();
+    EstadoCita getEstado();
+    Long getTotal();
+}
@@ -0,0 +1,9 @@
+package com.example.colegiosapp.repository;
+
+/**
+ * Fila de las exportaciones planas (CSV/NDJSON): las columnas del reporte más el
+ * identificador de la institución, ya que un solo archivo puede abarcar varias.
+ */
+public interface CitaExportRow extends CitaResumen {
+    Long getInstitucionId();
+}
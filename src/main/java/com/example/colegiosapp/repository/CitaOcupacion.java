@@ -0,0 +1,16 @@
+package com.example.colegiosapp.repository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Personas agendadas por institución, sede, fecha y hora (citas no canceladas).
+ * Se usa para reconciliar la ocupación de las franjas.
+ */
+public interface CitaOcupacion {
+    Long getInstitucionId();
+    Integer getIdSede();
+    LocalDate getFechaCita();
+    LocalTime getHoraCita();
+    Long getPersonas();
+}
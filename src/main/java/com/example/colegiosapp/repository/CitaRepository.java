@@ -1,21 +1,164 @@
 package com.example.colegiosapp.repository;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 
 /**
  * Es una interfaz de Spring Data JPA que hereda de JpaRepository, lo cual permite gestionar
  *  la entidad Cita con operaciones CRUD sin necesidad de escribir código SQL
  */
 @Repository
-public interface CitaRepository extends JpaRepository<Cita, Long> {
-    List<Cita> findByCorreoAgenda(String correoAgenda);
+public interface CitaRepository extends JpaRepository<Cita, Long>, JpaSpecificationExecutor<Cita> {
+
+    /**
+     * Filas que el driver trae por viaje al recorrer un flujo. En MySQL requiere
+     * useCursorFetch=true en la URL para que el resultado no se cargue completo.
+     */
+    String STREAMING_FETCH_SIZE = "1000";
+
+    // Las consultas que devuelven entidades traen la institución en el mismo SELECT
+    @EntityGraph(attributePaths = "institucion")
+    List<Cita> findByUsuarioId(Long usuarioId);
+    @EntityGraph(attributePaths = "institucion")
     List<Cita> findByInstitucionId(Long institucionId);
-    List<Cita> findByInstitucionIdAndEstado(Long institucionId, String estado);
+    @EntityGraph(attributePaths = "institucion")
+    List<Cita> findByInstitucionIdAndEstado(Long institucionId, EstadoCita estado);
+    @EntityGraph(attributePaths = "institucion")
     List<Cita> findByInstitucionIdAndFechaCitaBetween(Long institucionId, LocalDate start, LocalDate end);
-}
\ No newline at end of file
+
+    /** Cita con su institución ya cargada, para las vistas que muestran el nombre del colegio. */
+    @EntityGraph(attributePaths = "institucion")
+    Optional<Cita> findWithInstitucionById(Long id);
+
+    /**
+     * Cita con su institución, bloqueada hasta el fin de la transacción. Se usa al
+     * reprogramar o cancelar para decidir con el estado actual qué cupo mover o liberar.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cita c JOIN FETCH c.institucion WHERE c.id = :id")
+    Optional<Cita> findForUpdateById(@Param("id") Long id);
+
+    /** Indica si el tutor ya tiene una cita no cancelada en esa franja de la institución. */
+    @Query("SELECT COUNT(c) > 0 FROM Cita c WHERE c.usuario.id = :usuarioId AND c.institucion.id = :institucionId "
+            + "AND c.fechaCita = :fecha AND c.horaCita = :hora "
+            + "AND c.estado <> com.example.colegiosapp.entity.EstadoCita.CANCELADA")
+    boolean existsActivaEnFranja(@Param("usuarioId") Long usuarioId,
+                                @Param("institucionId") Long institucionId,
+                                @Param("fecha") LocalDate fecha,
+                                @Param("hora") LocalTime hora);
+
+    /**
+     * Citas del tutor para la página "mis citas", solo con las columnas que se muestran.
+     * El correo (único) se resuelve en la tabla de usuarios y las citas se buscan por id_usuario.
+     */
+    @Query("SELECT c.id AS id, i.nombre AS institucionNombre, c.fechaCita AS fechaCita, c.horaCita AS horaCita, "
+            + "c.cantidadCitas AS cantidadCitas, c.estado AS estado "
+            + "FROM Cita c JOIN c.usuario u LEFT JOIN c.institucion i WHERE u.correo = :correo ORDER BY c.id")
+    @Transactional(readOnly = true)
+    List<CitaTutorView> findTutorViewByUsuarioCorreo(@Param("correo") String correo);
+
+    /** Totales de citas por institución y estado recalculados desde la tabla (reconciliación de conteos). */
+    @Query("SELECT c.institucion.id AS institucionId, c.estado AS estado, COUNT(c) AS total "
+            + "FROM Cita c GROUP BY c.institucion.id, c.estado")
+    List<CitaEstadoCount> countGroupByInstitucionAndEstado();
+
+    /**
+     * Recorre las citas de una institución sin materializar la lista completa, aplicando
+     * los filtros opcionales de estado y rango de fechas (null = sin filtro). Devuelve
+     * solo las columnas del reporte, sin entidades que crezcan en el contexto de
+     * persistencia. Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAMING_FETCH_SIZE))
+    @Query("SELECT c.id AS id, c.fechaCita AS fechaCita, c.horaCita AS horaCita, c.nombreAgenda AS nombreAgenda, "
+            + "c.correoAgenda AS correoAgenda, c.telefonoAgenda AS telefonoAgenda, "
+            + "c.cantidadCitas AS cantidadCitas, c.estado AS estado "
+            + "FROM Cita c WHERE c.institucion.id = :institucionId "
+            + "AND (:estado IS NULL OR c.estado = :estado) "
+            + "AND (:desde IS NULL OR c.fechaCita >= :desde) "
+            + "AND (:hasta IS NULL OR c.fechaCita <= :hasta) "
+            + "ORDER BY c.id")
+    Stream<CitaResumen> streamForReport(@Param("institucionId") Long institucionId,
+                                        @Param("estado") EstadoCita estado,
+                                        @Param("desde") LocalDate desde,
+                                        @Param("hasta") LocalDate hasta);
+
+    /**
+     * Recorre las citas de una institución o de todas (institucionId null) con los
+     * mismos filtros que {@link #streamForReport}, ordenadas por institución e id.
+     * Pensado para exportaciones masivas que se escriben fila a fila.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAMING_FETCH_SIZE))
+    @Query("SELECT c.id AS id, c.institucion.id AS institucionId, c.fechaCita AS fechaCita, c.horaCita AS horaCita, "
+            + "c.nombreAgenda AS nombreAgenda, c.correoAgenda AS correoAgenda, c.telefonoAgenda AS telefonoAgenda, "
+            + "c.cantidadCitas AS cantidadCitas, c.estado AS estado "
+            + "FROM Cita c WHERE (:institucionId IS NULL OR c.institucion.id = :institucionId) "
+            + "AND (:estado IS NULL OR c.estado = :estado) "
+            + "AND (:desde IS NULL OR c.fechaCita >= :desde) "
+            + "AND (:hasta IS NULL OR c.fechaCita <= :hasta) "
+            + "ORDER BY c.institucion.id, c.id")
+    Stream<CitaExportRow> streamForExport(@Param("institucionId") Long institucionId,
+                                        @Param("estado") EstadoCita estado,
+                                        @Param("desde") LocalDate desde,
+                                        @Param("hasta") LocalDate hasta);
+
+    /**
+     * Ocupación agrupada por franja desde la fecha indicada, sin contar canceladas.
+     * Una cita sin cantidad cuenta como una persona.
+     */
+    @Query("SELECT c.institucion.id AS institucionId, c.idSede AS idSede, c.fechaCita AS fechaCita, "
+            + "c.horaCita AS horaCita, SUM(COALESCE(c.cantidadCitas, 1)) AS personas "
+            + "FROM Cita c WHERE c.fechaCita >= :desde AND c.estado <> com.example.colegiosapp.entity.EstadoCita.CANCELADA "
+            + "GROUP BY c.institucion.id, c.idSede, c.fechaCita, c.horaCita")
+    List<CitaOcupacion> sumOcupacionDesde(@Param("desde") LocalDate desde);
+
+    /**
+     * Franja y personas de cada cita de la institución en el rango con alguno de los
+     * estados indicados, bloqueando esas filas hasta el fin de la transacción. Se usa
+     * antes de {@link #updateEstado} para saber qué cupos se liberan.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c.institucion.id AS institucionId, c.idSede AS idSede, c.fechaCita AS fechaCita, "
+            + "c.horaCita AS horaCita, CAST(COALESCE(c.cantidadCitas, 1) AS Long) AS personas "
+            + "FROM Cita c WHERE c.institucion.id = :institucionId "
+            + "AND c.fechaCita BETWEEN :desde AND :hasta AND c.estado IN :estados")
+    List<CitaOcupacion> lockOcupacion(@Param("institucionId") Long institucionId,
+                                    @Param("desde") LocalDate desde,
+                                    @Param("hasta") LocalDate hasta,
+                                    @Param("estados") Collection<EstadoCita> estados);
+
+    /**
+     * Cambia en un solo UPDATE el estado de las citas de la institución en el rango que
+     * tengan alguno de los estados indicados.
+     * @return número de citas modificadas.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cita c SET c.estado = :nuevoEstado WHERE c.institucion.id = :institucionId "
+            + "AND c.fechaCita BETWEEN :desde AND :hasta AND c.estado IN :estados")
+    int updateEstado(@Param("institucionId") Long institucionId,
+                    @Param("desde") LocalDate desde,
+                    @Param("hasta") LocalDate hasta,
+                    @Param("estados") Collection<EstadoCita> estados,
+                    @Param("nuevoEstado") EstadoCita nuevoEstado);
+}
@@ -0,0 +1,21 @@
+package com.example.colegiosapp.repository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import com.example.colegiosapp.entity.EstadoCita;
+
+/**
+ * Proyección con las columnas de una cita que muestran la previsualización y los
+ * reportes. Se lee sin cargar la entidad Cita ni su institución.
+ */
+public interface CitaResumen {
+    Long getId();
+    LocalDate getFechaCita();
+    LocalTime getHoraCita();
+    String getNombreAgenda();
+    String getCorreoAgenda();
+    String getTelefonoAgenda();
+    Integer getCantidadCitas();
+    EstadoCita getEstado();
+}
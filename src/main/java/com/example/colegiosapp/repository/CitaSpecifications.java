@@ -0,0 +1,46 @@
+package com.example.colegiosapp.repository;
+
+import java.time.LocalDate;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
+
+/**
+ * Filtros de citas que se traducen a condiciones SQL. Cada filtro con valor null no
+ * agrega condición, así la consulta generada solo contiene los predicados usados y
+ * puede aprovechar los índices correspondientes.
+ */
+public final class CitaSpecifications {
+
+    private CitaSpecifications() {
+    }
+
+    /** Combina los filtros de la previsualización de reportes. */
+    public static Specification<Cita> filtro(Long institucionId, EstadoCita estado, LocalDate desde, LocalDate hasta) {
+        return Specification.allOf(deInstitucion(institucionId), conEstado(estado), desde(desde), hasta(hasta));
+    }
+
+    public static Specification<Cita> deInstitucion(Long institucionId) {
+        return (root, query, cb) -> institucionId == null ? null
+                : cb.equal(root.get("institucion").get("id"), institucionId);
+    }
+
+    public static Specification<Cita> conEstado(EstadoCita estado) {
+        return (root, query, cb) -> estado == null ? null : cb.equal(root.get("estado"), estado);
+    }
+
+    public static Specification<Cita> desde(LocalDate fecha) {
+        return (root, query, cb) -> fecha == null ? null : cb.greaterThanOrEqualTo(root.get("fechaCita"), fecha);
+    }
+
+    public static Specification<Cita> hasta(LocalDate fecha) {
+        return (root, query, cb) -> fecha == null ? null : cb.lessThanOrEqualTo(root.get("fechaCita"), fecha);
+    }
+
+    /** Condición de paginación por clave: citas con id posterior al último mostrado. */
+    public static Specification<Cita> idMayorQue(Long id) {
+        return (root, query, cb) -> id == null ? null : cb.greaterThan(root.get("id"), id);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.colegiosapp.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.colegiosapp.entity.CitaStatusCount;
+
+/** Lectura de los totales por institución y estado ya calculados. */
+@Repository
+public interface CitaStatusCountRepository extends JpaRepository<CitaStatusCount, CitaStatusCount.Key> {
+
+    @Query("SELECT new com.example.colegiosapp.repository.CitaStatusTotal(s.institucionId, s.estado, s.total) "
+            + "FROM CitaStatusCount s")
+    List<CitaEstadoCount> findAllCounts();
+
+    @Query("SELECT new com.example.colegiosapp.repository.CitaStatusTotal(s.institucionId, s.estado, s.total) "
+            + "FROM CitaStatusCount s WHERE s.institucionId = :institucionId")
+    List<CitaEstadoCount> findCountsByInstitucion(@Param("institucionId") Long institucionId);
+}
@@ -0,0 +1,25 @@
+package com.example.colegiosapp.repository;
+
+import com.example.colegiosapp.entity.EstadoCita;
+
+/**
+ * Fila de {@code cita_status_counts} leída con una expresión de constructor, sin
+ * cargar la entidad. El estado llega como código, tal como se guarda en la clave.
+ */
+public record CitaStatusTotal(Long institucionId, short codigoEstado, Long total) implements CitaEstadoCount {
+
+    @Override
+    public Long getInstitucionId() {
+        return institucionId;
+    }
+
+    @Override
+    public EstadoCita getEstado() {
+        return EstadoCita.deCodigo(codigoEstado);
+    }
+
+    @Override
+    public Long getTotal() {
+        return total;
+    }
+}
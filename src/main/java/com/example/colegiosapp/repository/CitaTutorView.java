@@ -0,0 +1,19 @@
+package com.example.colegiosapp.repository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import com.example.colegiosapp.entity.EstadoCita;
+
+/**
+ * Proyección de la página "mis citas" del tutor: datos de la cita más el nombre de
+ * la institución, obtenidos con un único SELECT.
+ */
+public interface CitaTutorView {
+    Long getId();
+    String getInstitucionNombre();
+    LocalDate getFechaCita();
+    LocalTime getHoraCita();
+    Integer getCantidadCitas();
+    EstadoCita getEstado();
+}
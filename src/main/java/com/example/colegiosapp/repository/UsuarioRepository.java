@@ -1,7 +1,9 @@
 package com.example.colegiosapp.repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,5 +12,11 @@ import com.example.colegiosapp.entity.Usuario;
 
 @Repository
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
+    // El rol se trae en el mismo SELECT en lugar de una consulta aparte por rol
+    @EntityGraph(attributePaths = "rol")
     Optional<Usuario> findByCorreo(String correo);
+
+    @Override
+    @EntityGraph(attributePaths = "rol")
+    List<Usuario> findAll();
 }
\ No newline at end of file
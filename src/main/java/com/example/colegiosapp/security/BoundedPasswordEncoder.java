@@ -0,0 +1,113 @@
+package com.example.colegiosapp.security;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * BCrypt ejecutado en un pool propio y acotado. Los hilos de Tomcat solo esperan el
+ * resultado, así que un pico de inicios de sesión no puede ocupar más núcleos que
+ * los hilos del pool. Si la cola está llena, o la espera supera el tiempo máximo, se
+ * rechaza con {@link AuthenticationServiceException} (el login responde con error en
+ * vez de quedarse colgado).
+ *
+ * <p>{@link #upgradeEncoding(String)} indica si un hash tiene un costo menor al
+ * configurado; Spring Security lo vuelve a generar tras un login correcto.
+ *
+ * <p>Métricas: {@code seguridad.hash.duracion} (op=matches|encode),
+ * {@code seguridad.hash.espera}, {@code seguridad.hash.rechazos} y
+ * {@code seguridad.hash.cola}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final Timer matchesTimer;
+    private final Timer encodeTimer;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(int cost, int threads, int queueCapacity, Duration timeout, MeterRegistry registry) {
+        this.delegate = new BCryptPasswordEncoder(cost);
+        this.timeoutMillis = timeout.toMillis();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.matchesTimer = Timer.builder("seguridad.hash.duracion").tag("op", "matches").register(registry);
+        this.encodeTimer = Timer.builder("seguridad.hash.duracion").tag("op", "encode").register(registry);
+        this.waitTimer = Timer.builder("seguridad.hash.espera").register(registry);
+        this.rejected = Counter.builder("seguridad.hash.rechazos").register(registry);
+        Gauge.builder("seguridad.hash.cola", executor, e -> e.getQueue().size()).register(registry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Timer timer, Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AuthenticationServiceException("Demasiadas solicitudes de inicio de sesión, intente de nuevo", e);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new AuthenticationServiceException("Tiempo de espera agotado al verificar la contraseña", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Verificación de contraseña interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new AuthenticationServiceException("Error al verificar la contraseña", e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
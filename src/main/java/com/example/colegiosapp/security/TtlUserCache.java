@@ -0,0 +1,78 @@
+package com.example.colegiosapp.security;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Caché de {@link UserDetails} por correo con expiración corta, usada por el proveedor
+ * de autenticación para no consultar usuario y rol en cada intento de login. Si la
+ * contraseña no coincide con la copia en caché, Spring Security vuelve a leer el
+ * usuario de la base de datos, así que un cambio de contraseña no bloquea el acceso.
+ *
+ * <p>Se guardan y devuelven copias: el {@code ProviderManager} borra la contraseña del
+ * usuario autenticado y eso no debe afectar a la entrada almacenada.
+ */
+public class TtlUserCache implements UserCache {
+
+    private record Entry(UserDetails user, long expiresAt) { }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public TtlUserCache(Duration ttl, int maxEntries, MeterRegistry registry) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("seguridad.usuarios.cache").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("seguridad.usuarios.cache").tag("result", "miss").register(registry);
+        Gauge.builder("seguridad.usuarios.cache.entries", entries, Map::size).register(registry);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        Entry entry = entries.get(username);
+        if (entry == null || entry.expiresAt() - System.nanoTime() < 0) {
+            if (entry != null) {
+                entries.remove(username, entry);
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(entry.user());
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (entries.size() >= maxEntries) {
+            long now = System.nanoTime();
+            entries.values().removeIf(e -> e.expiresAt() - now < 0);
+            if (entries.size() >= maxEntries) {
+                // Todas vigentes: se vacía en lugar de crecer sin límite
+                entries.clear();
+            }
+        }
+        entries.put(user.getUsername(), new Entry(copy(user), System.nanoTime() + ttlNanos));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        entries.remove(username);
+    }
+
+    private static UserDetails copy(UserDetails user) {
+        return User.withUserDetails(user).build();
+    }
+}
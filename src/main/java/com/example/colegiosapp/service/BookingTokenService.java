@@ -0,0 +1,162 @@
+package com.example.colegiosapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Token firmado (HMAC-SHA256) con el borrador de una cita entre el formulario de
+ * agendamiento y la confirmación, para que ese paso no guarde nada en la sesión HTTP y
+ * cualquier instancia de la aplicación pueda confirmar. El token va ligado al usuario
+ * que lo pidió y vence a los {@code citas.reserva.token.ttl}. Al confirmar, el token
+ * se marca como usado en {@code reserva_tokens_usados}, en la transacción de la cita,
+ * así el mismo token no crea dos citas aunque se envíe dos veces a la vez.
+ *
+ * <p>Con varias instancias todas deben compartir {@code citas.reserva.token.secreto}.
+ * Si no se configura se genera uno aleatorio al arrancar, válido solo en esta instancia;
+ * con sesiones compartidas ({@code sesiones.jdbc.enabled}) el secreto es obligatorio.
+ */
+@Service
+public class BookingTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingTokenService.class);
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+    /** Datos de la cita elegidos en el formulario. */
+    public record Borrador(Long institucionId, LocalDate fecha, LocalTime hora, int cantidad, String grado) { }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SecretKeySpec clave;
+    private final Duration ttl;
+
+    public BookingTokenService(JdbcTemplate jdbcTemplate,
+                            @Value("${citas.reserva.token.secreto:}") String secreto,
+                            @Value("${citas.reserva.token.ttl:PT15M}") Duration ttl,
+                            @Value("${sesiones.jdbc.enabled:false}") boolean sesionesCompartidas) {
+        this.jdbcTemplate = jdbcTemplate;
+        byte[] bytes;
+        if (secreto == null || secreto.isBlank()) {
+            if (sesionesCompartidas) {
+                throw new IllegalStateException("citas.reserva.token.secreto es obligatorio con sesiones.jdbc.enabled=true: "
+                        + "cada instancia generaría su propia clave y rechazaría los tokens de las demás");
+            }
+            bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+            log.warn("*** citas.reserva.token.secreto no está configurado: se usa una clave aleatoria y los tokens de "
+                    + "reserva solo serán válidos en esta instancia. Con varias instancias, configure el mismo "
+                    + "secreto en todas o las confirmaciones fallarán al llegar a otra instancia ***");
+        } else {
+            bytes = secreto.getBytes(StandardCharsets.UTF_8);
+        }
+        this.clave = new SecretKeySpec(bytes, ALGORITMO);
+        this.ttl = ttl;
+    }
+
+    /** Firma el borrador para el usuario indicado. */
+    public String emitir(Borrador borrador, Long usuarioId) {
+        long expira = Instant.now().plus(ttl).getEpochSecond();
+        // El grado va al final: es el único campo de texto libre
+        String datos = borrador.institucionId() + "|" + borrador.fecha() + "|" + borrador.hora() + "|"
+                + borrador.cantidad() + "|" + usuarioId + "|" + expira + "|" + borrador.grado();
+        byte[] payload = datos.getBytes(StandardCharsets.UTF_8);
+        return B64.encodeToString(payload) + "." + B64.encodeToString(firmar(payload));
+    }
+
+    /**
+     * Comprueba firma, usuario y vencimiento y devuelve el borrador.
+     * @throws IllegalArgumentException si el token no es válido, es de otro usuario o venció.
+     */
+    public Borrador verificar(String token, Long usuarioId) {
+        int punto = token == null ? -1 : token.indexOf('.');
+        if (punto < 0) {
+            throw invalido();
+        }
+        byte[] payload;
+        byte[] firma;
+        try {
+            payload = B64_DECODER.decode(token.substring(0, punto));
+            firma = B64_DECODER.decode(token.substring(punto + 1));
+        } catch (IllegalArgumentException e) {
+            throw invalido();
+        }
+        if (!MessageDigest.isEqual(firmar(payload), firma)) {
+            throw invalido();
+        }
+        String[] campos = new String(payload, StandardCharsets.UTF_8).split("\\|", 7);
+        try {
+            if (campos.length != 7 || !campos[4].equals(String.valueOf(usuarioId))) {
+                throw invalido();
+            }
+            if (Instant.now().getEpochSecond() > Long.parseLong(campos[5])) {
+                throw new IllegalArgumentException("La reserva venció; vuelva a elegir la fecha y la hora.");
+            }
+            return new Borrador(Long.valueOf(campos[0]), LocalDate.parse(campos[1]), LocalTime.parse(campos[2]),
+                    Integer.parseInt(campos[3]), campos[6]);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw invalido();
+        }
+    }
+
+    /**
+     * Marca el token como usado en la transacción actual. Si esta se deshace, el token
+     * puede volver a confirmarse.
+     * @throws DuplicateKeyException si el token ya se usó.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void consumir(String token) {
+        // El token vence como mucho un ttl después de ahora; hasta entonces se guarda la marca
+        long expira = Instant.now().plus(ttl).getEpochSecond();
+        jdbcTemplate.update("INSERT INTO reserva_tokens_usados (token_hash, expira_en) VALUES (?, ?)", hash(token), expira);
+    }
+
+    /** Borra las marcas de tokens que ya vencieron. */
+    @Scheduled(cron = "${citas.reserva.token.purga-cron:0 15 * * * *}")
+    public void purgarTokensUsados() {
+        jdbcTemplate.update("DELETE FROM reserva_tokens_usados WHERE expira_en < ?", Instant.now().getEpochSecond());
+    }
+
+    private static String hash(String token) {
+        try {
+            return B64.encodeToString(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private byte[] firmar(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(clave);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo firmar el token de reserva", e);
+        }
+    }
+
+    private static IllegalArgumentException invalido() {
+        return new IllegalArgumentException("La reserva no es válida; vuelva a elegir la fecha y la hora.");
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.colegiosapp.service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.repository.CitaRepository;
+
+/**
+ * Agenda, reprograma y cancela citas de una en una. El cupo de la franja y la cita se
+ * escriben en la misma transacción: si no hay cupo no se guarda nada y si guardar la
+ * cita falla, el cupo tomado vuelve con el rollback. Como en los cambios masivos, la
+ * fila de la cita se bloquea antes que las de franja.
+ */
+@Service
+public class CitaAgendaService {
+
+    private final CitaRepository citaRepository;
+    private final SlotCapacityService slotCapacityService;
+    private final BookingTokenService bookingTokenService;
+
+    public CitaAgendaService(CitaRepository citaRepository,
+                            SlotCapacityService slotCapacityService,
+                            BookingTokenService bookingTokenService) {
+        this.citaRepository = citaRepository;
+        this.slotCapacityService = slotCapacityService;
+        this.bookingTokenService = bookingTokenService;
+    }
+
+    /**
+     * Guarda la cita nueva, marca como usado el token de la confirmación y reserva el cupo.
+     * @return false si la franja no tiene cupo o no admite reservas; no se guarda nada y
+     *         el token sigue sin usar.
+     * @throws org.springframework.dao.DuplicateKeyException si el token ya se confirmó; no se guarda nada.
+     */
+    @Transactional
+    public boolean agendar(Cita cita, String token) {
+        bookingTokenService.consumir(token);
+        // La cita se escribe antes que la franja, en el mismo orden que los cambios masivos
+        citaRepository.saveAndFlush(cita);
+        if (!slotCapacityService.tryReserve(cita.getInstitucion().getId(), cita.getIdSede(), cita.getFechaCita(),
+                cita.getHoraCita(), cita.getCantidadCitas())) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mueve la cita a la nueva fecha y hora y la marca como reprogramada. La cita se lee
+     * bloqueada, así dos reprogramaciones simultáneas no mueven el cupo desde la misma
+     * franja. Una cita cancelada no ocupaba cupo: reprogramarla lo vuelve a tomar.
+     * @return false si la nueva franja no tiene cupo o no admite reservas; la cita no cambia.
+     */
+    @Transactional
+    public boolean reprogramar(Long citaId, LocalDate fecha, LocalTime hora) {
+        Cita cita = citaRepository.findForUpdateById(citaId).orElseThrow();
+        Long institucionId = cita.getInstitucion().getId();
+        boolean reservado = cita.getEstado() == EstadoCita.CANCELADA
+                ? slotCapacityService.tryReserve(institucionId, cita.getIdSede(), fecha, hora, cita.getCantidadCitas())
+                : slotCapacityService.tryMove(institucionId, cita.getIdSede(), cita.getFechaCita(), cita.getHoraCita(),
+                        fecha, hora, cita.getCantidadCitas());
+        if (!reservado) {
+            return false;
+        }
+        cita.setFechaCita(fecha);
+        cita.setHoraCita(hora);
+        cita.setEstado(EstadoCita.REPROGRAMADA);
+        citaRepository.save(cita);
+        return true;
+    }
+
+    /**
+     * Cancela la cita y devuelve su cupo. La cita se lee bloqueada, así dos
+     * cancelaciones simultáneas no liberan el cupo dos veces.
+     * @return false si la cita ya estaba cancelada.
+     */
+    @Transactional
+    public boolean cancelar(Long citaId) {
+        Cita cita = citaRepository.findForUpdateById(citaId).orElseThrow();
+        if (cita.getEstado() == EstadoCita.CANCELADA) {
+            return false;
+        }
+        slotCapacityService.release(cita.getInstitucion().getId(), cita.getIdSede(), cita.getFechaCita(),
+                cita.getHoraCita(), cita.getCantidadCitas());
+        cita.setEstado(EstadoCita.CANCELADA);
+        citaRepository.save(cita);
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.colegiosapp.service;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.report.ReportDataVersion;
+import com.example.colegiosapp.repository.CitaOcupacion;
+import com.example.colegiosapp.repository.CitaRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Cambios de estado masivos (marcar la asistencia de un día, cancelar las citas de una
+ * fecha cerrada) ejecutados como un único UPDATE por institución, rango de fechas y
+ * estado actual. Los totales de {@code cita_status_counts} y la versión de datos de
+ * los reportes se ajustan en la misma transacción.
+ *
+ * <p>Al cancelar, las citas afectadas se bloquean y se leen antes del UPDATE para
+ * devolver sus cupos en la misma transacción, después de escribir las citas. Las citas canceladas
+ * no se reactivan en bloque: volver a ocuparlas requiere comprobar el cupo de cada una,
+ * así que se reprograman una por una.
+ */
+@Service
+public class CitaEstadoService {
+
+    private final CitaRepository citaRepository;
+    private final SlotCapacityService slotCapacityService;
+    private final CitaStatusCounter citaStatusCounter;
+    private final ReportDataVersion reportDataVersion;
+    private final MeterRegistry meterRegistry;
+
+    public CitaEstadoService(CitaRepository citaRepository,
+                            SlotCapacityService slotCapacityService,
+                            CitaStatusCounter citaStatusCounter,
+                            ReportDataVersion reportDataVersion,
+                            MeterRegistry meterRegistry) {
+        this.citaRepository = citaRepository;
+        this.slotCapacityService = slotCapacityService;
+        this.citaStatusCounter = citaStatusCounter;
+        this.reportDataVersion = reportDataVersion;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Pasa a {@code nuevoEstado} las citas de la institución entre {@code desde} y
+     * {@code hasta} (inclusive) cuyo estado sea {@code estadoActual}, o cualquiera
+     * distinto de {@link EstadoCita#CANCELADA} si es null.
+     * @return número de citas modificadas.
+     * @throws IllegalArgumentException si falta el nuevo estado o se intenta reactivar citas canceladas.
+     */
+    @Transactional
+    public int cambiarEstado(Long institucionId, LocalDate desde, LocalDate hasta,
+                            EstadoCita estadoActual, EstadoCita nuevoEstado) {
+        if (institucionId == null || desde == null || hasta == null || desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("Indique la institución y un rango de fechas válido");
+        }
+        if (nuevoEstado == null) {
+            throw new IllegalArgumentException("Estado no válido");
+        }
+        if (estadoActual == EstadoCita.CANCELADA && nuevoEstado != EstadoCita.CANCELADA) {
+            throw new IllegalArgumentException("Las citas canceladas no se reactivan en bloque; reprográmelas una por una");
+        }
+        List<EstadoCita> estados = estadoActual != null
+                ? List.of(estadoActual)
+                : Stream.of(EstadoCita.values()).filter(e -> e != EstadoCita.CANCELADA).toList();
+        estados = estados.stream().filter(e -> e != nuevoEstado).toList();
+        if (estados.isEmpty()) {
+            return 0;
+        }
+
+        List<CitaOcupacion> liberadas = nuevoEstado == EstadoCita.CANCELADA
+                ? citaRepository.lockOcupacion(institucionId, desde, hasta, estados)
+                : List.of();
+        // Un UPDATE por estado de origen para conocer cuántas citas salen de cada uno
+        Map<EstadoCita, Long> deltas = new EnumMap<>(EstadoCita.class);
+        int actualizadas = 0;
+        for (EstadoCita estado : estados) {
+            int n = citaRepository.updateEstado(institucionId, desde, hasta, List.of(estado), nuevoEstado);
+            if (n > 0) {
+                deltas.put(estado, -(long) n);
+                actualizadas += n;
+            }
+        }
+        if (actualizadas == 0) {
+            return 0;
+        }
+        deltas.put(nuevoEstado, (long) actualizadas);
+        citaStatusCounter.addAll(institucionId, deltas);
+        reportDataVersion.bump(institucionId);
+        for (CitaOcupacion o : liberadas) {
+            slotCapacityService.release(o.getInstitucionId(), o.getIdSede(), o.getFechaCita(),
+                    o.getHoraCita(), o.getPersonas().intValue());
+        }
+        int total = actualizadas;
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                meterRegistry.counter("citas.operaciones", "operacion", "cambio_estado_masivo", "resultado", "ok")
+                        .increment(total);
+            }
+        });
+        return actualizadas;
+    }
+}
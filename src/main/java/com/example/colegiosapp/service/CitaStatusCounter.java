@@ -0,0 +1,128 @@
+package com.example.colegiosapp.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.repository.CitaEstadoCount;
+import com.example.colegiosapp.repository.CitaRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Mantiene la tabla {@code cita_status_counts} (total de citas por institución y estado).
+ * Los cambios se aplican en la misma transacción que modifica las citas: los de una en
+ * una llegan desde {@link CitaStatusEventListener} y los masivos desde
+ * {@link CitaEstadoService}.
+ *
+ * <p>{@link #reconciliar()} reconstruye la tabla desde {@code citas} al arrancar y cada
+ * {@code citas.conteos.reconciliacion-cron}, y corrige lo que se haya desviado (citas
+ * escritas con SQL directo, fallos entre versiones).
+ */
+@Service
+public class CitaStatusCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(CitaStatusCounter.class);
+
+    private static final String UPSERT = "INSERT INTO cita_status_counts (id_colegio, estado, total) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE total = total + VALUES(total)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CitaRepository citaRepository;
+    private final MeterRegistry meterRegistry;
+
+    public CitaStatusCounter(JdbcTemplate jdbcTemplate, CitaRepository citaRepository, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.citaRepository = citaRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Suma {@code delta} (puede ser negativo) al total de la institución en ese estado. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(Long institucionId, EstadoCita estado, long delta) {
+        if (institucionId == null || estado == null || delta == 0) {
+            return;
+        }
+        jdbcTemplate.update(UPSERT, institucionId, estado.getCodigo(), delta);
+    }
+
+    /**
+     * Aplica varios cambios de una institución. Se recorren por estado para que dos
+     * transacciones bloqueen las filas siempre en el mismo orden.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addAll(Long institucionId, Map<EstadoCita, Long> deltas) {
+        for (Map.Entry<EstadoCita, Long> d : new TreeMap<>(deltas).entrySet()) {
+            add(institucionId, d.getKey(), d.getValue());
+        }
+    }
+
+    /**
+     * Recalcula los totales desde {@code citas} y actualiza solo las filas que difieren.
+     * Las filas de conteo se bloquean antes de contar, así las escrituras concurrentes
+     * esperan y no se pierden sus incrementos.
+     * @return número de filas corregidas.
+     */
+    @Scheduled(cron = "${citas.conteos.reconciliacion-cron:0 30 3 * * *}")
+    @Transactional
+    public int reconciliar() {
+        Map<Clave, Long> actuales = new HashMap<>();
+        jdbcTemplate.query("SELECT id_colegio, estado, total FROM cita_status_counts FOR UPDATE",
+                rs -> { actuales.put(new Clave(rs.getLong(1), EstadoCita.deCodigo(rs.getShort(2))), rs.getLong(3)); });
+
+        SortedMap<Clave, Long> reales = new TreeMap<>();
+        for (CitaEstadoCount c : citaRepository.countGroupByInstitucionAndEstado()) {
+            if (c.getInstitucionId() != null && c.getEstado() != null) {
+                reales.put(new Clave(c.getInstitucionId(), c.getEstado()), c.getTotal());
+            }
+        }
+
+        int diferencias = 0;
+        for (Map.Entry<Clave, Long> r : reales.entrySet()) {
+            Long actual = actuales.remove(r.getKey());
+            if (!r.getValue().equals(actual)) {
+                jdbcTemplate.update("INSERT INTO cita_status_counts (id_colegio, estado, total) VALUES (?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE total = VALUES(total)",
+                        r.getKey().institucionId(), r.getKey().estado().getCodigo(), r.getValue());
+                diferencias++;
+            }
+        }
+        for (Clave sobrante : actuales.keySet()) {
+            jdbcTemplate.update("DELETE FROM cita_status_counts WHERE id_colegio = ? AND estado = ?",
+                    sobrante.institucionId(), sobrante.estado().getCodigo());
+            diferencias++;
+        }
+
+        meterRegistry.counter("citas.conteos.diferencias").increment(diferencias);
+        if (diferencias > 0) {
+            log.warn("Conteos de citas por estado reconciliados: {} filas corregidas", diferencias);
+        }
+        return diferencias;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconciliarAlArrancar() {
+        reconciliar();
+    }
+
+    private record Clave(long institucionId, EstadoCita estado) implements Comparable<Clave> {
+        @Override
+        public int compareTo(Clave o) {
+            int c = Long.compare(institucionId, o.institucionId);
+            return c != 0 ? c : estado.compareTo(o.estado);
+        }
+    }
+}
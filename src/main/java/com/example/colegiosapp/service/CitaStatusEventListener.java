@@ -0,0 +1,119 @@
+package com.example.colegiosapp.service;
+
+import java.util.Map;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.report.ReportDataVersion;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Lleva a {@link CitaStatusCounter} cada alta, cambio de estado o de institución y
+ * borrado de una {@link Cita} hecho con JPA, e incrementa la versión de datos de los
+ * reportes ({@link ReportDataVersion}) de las instituciones afectadas. Se ejecuta
+ * durante el flush, dentro de la transacción que escribe la cita. Los UPDATE masivos
+ * en JPQL no pasan por aquí.
+ */
+@Component
+public class CitaStatusEventListener
+        implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CitaStatusEventListener.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final CitaStatusCounter counter;
+    private final ReportDataVersion reportDataVersion;
+
+    public CitaStatusEventListener(EntityManagerFactory entityManagerFactory, CitaStatusCounter counter,
+                                ReportDataVersion reportDataVersion) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.counter = counter;
+        this.reportDataVersion = reportDataVersion;
+    }
+
+    @PostConstruct
+    void registrar() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().requireService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Cita) {
+            Clave nueva = clave(event.getPersister(), event.getState());
+            counter.add(nueva.institucionId(), nueva.estado(), 1);
+            reportDataVersion.bump(nueva.institucionId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Cita)) {
+            return;
+        }
+        // Cualquier cambio (fecha, hora, contacto) cambia los reportes de la institución
+        Clave nueva = clave(event.getPersister(), event.getState());
+        reportDataVersion.bump(nueva.institucionId());
+        if (event.getOldState() == null) {
+            log.warn("Cita {} actualizada sin estado previo; el conteo por estado se corregirá al reconciliar",
+                    event.getId());
+            return;
+        }
+        Clave anterior = clave(event.getPersister(), event.getOldState());
+        if (anterior.institucionId() != null && !anterior.institucionId().equals(nueva.institucionId())) {
+            reportDataVersion.bump(anterior.institucionId());
+        }
+        if (anterior.equals(nueva)) {
+            return;
+        }
+        if (anterior.institucionId() != null && anterior.institucionId().equals(nueva.institucionId())
+                && anterior.estado() != null && nueva.estado() != null) {
+            counter.addAll(nueva.institucionId(), Map.of(anterior.estado(), -1L, nueva.estado(), 1L));
+        } else {
+            counter.add(anterior.institucionId(), anterior.estado(), -1);
+            counter.add(nueva.institucionId(), nueva.estado(), 1);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Cita) {
+            Clave anterior = clave(event.getPersister(), event.getDeletedState());
+            counter.add(anterior.institucionId(), anterior.estado(), -1);
+            reportDataVersion.bump(anterior.institucionId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private static Clave clave(EntityPersister persister, Object[] state) {
+        Object institucion = state[persister.getPropertyIndex("institucion")];
+        Object estado = state[persister.getPropertyIndex("estado")];
+        return new Clave(institucion instanceof Institucion i ? i.getId() : null, (EstadoCita) estado);
+    }
+
+    private record Clave(Long institucionId, EstadoCita estado) { }
+}
@@ -0,0 +1,83 @@
+package com.example.colegiosapp.service;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.stereotype.Service;
+
+import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.repository.InstitucionRepository;
+
+/**
+ * Copia en memoria de las localidades y de las instituciones de cada una, para que
+ * la página de agendamiento no consulte la base de datos. La copia es inmutable y se
+ * reemplaza completa con {@link #refresh()} cada vez que se guarda una institución;
+ * las peticiones en curso siguen usando la anterior sin bloquearse.
+ *
+ * <p>Las localidades se comparan sin distinguir mayúsculas ni tildes, igual que la
+ * intercalación de MySQL que usaban las consultas {@code DISTINCT}/{@code ORDER BY}.
+ */
+@Service
+public class InstitucionCatalog {
+
+    private record Snapshot(List<String> localidades, Map<String, List<Institucion>> porLocalidad) { }
+
+    private final InstitucionRepository institucionRepository;
+    private volatile Snapshot snapshot;
+
+    public InstitucionCatalog(InstitucionRepository institucionRepository) {
+        this.institucionRepository = institucionRepository;
+    }
+
+    /** Localidades con al menos una institución, en orden alfabético. */
+    public List<String> localidades() {
+        return current().localidades();
+    }
+
+    /** Instituciones de la localidad indicada (lista vacía si no hay). */
+    public List<Institucion> porLocalidad(String localidad) {
+        if (localidad == null) {
+            return List.of();
+        }
+        return current().porLocalidad().getOrDefault(localidad, List.of());
+    }
+
+    /** Vuelve a leer las instituciones y reemplaza la copia de una sola vez. */
+    public void refresh() {
+        snapshot = load();
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                s = snapshot;
+                if (s == null) {
+                    s = load();
+                    snapshot = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    private Snapshot load() {
+        Collator collator = Collator.getInstance(Locale.forLanguageTag("es"));
+        collator.setStrength(Collator.PRIMARY);
+        Map<String, List<Institucion>> grupos = new TreeMap<>(collator);
+        List<Institucion> todas = new ArrayList<>(institucionRepository.findAll());
+        todas.sort(Comparator.comparing(Institucion::getId));
+        for (Institucion inst : todas) {
+            if (inst.getLocalidad() == null) continue;
+            grupos.computeIfAbsent(inst.getLocalidad(), k -> new ArrayList<>()).add(inst);
+        }
+        grupos.replaceAll((k, v) -> List.copyOf(v));
+        return new Snapshot(List.copyOf(grupos.keySet()), Collections.unmodifiableMap(grupos));
+    }
+}
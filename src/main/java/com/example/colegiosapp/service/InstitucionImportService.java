@@ -0,0 +1,424 @@
+package com.example.colegiosapp.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.report.ReportDataVersion;
+
+/**
+ * Carga masiva de instituciones desde CSV o XLSX. El archivo se lee fila a fila (el
+ * XLSX con la API de eventos de POI, sin cargar el libro en memoria), cada fila se
+ * valida y las válidas se guardan en lotes de {@code instituciones.importacion.lote}
+ * con un INSERT ... ON DUPLICATE KEY UPDATE por lote, cada lote en su transacción. Si
+ * un lote falla se reintenta fila a fila para indicar cuál es la fila con error.
+ *
+ * <p>La primera fila lleva los encabezados: {@code id}, {@code nombre},
+ * {@code localidad}, {@code direccion_principal}, {@code correo}, {@code telefono} y,
+ * opcional, {@code capacidad_franja}.
+ */
+@Service
+public class InstitucionImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(InstitucionImportService.class);
+
+    private static final String UPSERT = "INSERT INTO instituciones "
+            + "(Id_Colegio, nombre, localidad, direccion_principal, correo, telefono, capacidad_franja) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE nombre = VALUES(nombre), localidad = VALUES(localidad), "
+            + "direccion_principal = VALUES(direccion_principal), correo = VALUES(correo), "
+            + "telefono = VALUES(telefono), "
+            // Sin columna o celda de capacidad se conserva la configurada
+            + "capacidad_franja = COALESCE(VALUES(capacidad_franja), capacidad_franja)";
+
+    private static final Pattern CORREO = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    private static final int MAX_LONGITUD = 255;
+    /** Errores que se detallan en el resultado; del resto solo se informa la cantidad. */
+    private static final int MAX_ERRORES = 1000;
+
+    /** Error de validación o de escritura de una fila del archivo (numerada desde 1). */
+    public record ErrorFila(int fila, String mensaje) { }
+
+    public record ImportResult(int filasLeidas, int guardadas, List<ErrorFila> errores, int totalErrores,
+                            long milisegundos) { }
+
+    /** Recibe cada fila del archivo con su número y el valor de sus celdas. */
+    @FunctionalInterface
+    interface RowHandler {
+        void row(int numero, List<String> celdas);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SlotCapacityService slotCapacityService;
+    private final InstitucionCatalog institucionCatalog;
+    private final ReportDataVersion reportDataVersion;
+    private final int tamanoLote;
+
+    public InstitucionImportService(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    SlotCapacityService slotCapacityService,
+                                    InstitucionCatalog institucionCatalog,
+                                    ReportDataVersion reportDataVersion,
+                                    @Value("${instituciones.importacion.lote:500}") int tamanoLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.slotCapacityService = slotCapacityService;
+        this.institucionCatalog = institucionCatalog;
+        this.reportDataVersion = reportDataVersion;
+        this.tamanoLote = tamanoLote;
+    }
+
+    /**
+     * Importa el archivo; el formato se decide por la extensión.
+     * @throws IllegalArgumentException si la extensión no es .csv ni .xlsx o faltan columnas obligatorias.
+     */
+    public ImportResult importar(String nombreArchivo, InputStream in) throws IOException {
+        String nombre = nombreArchivo != null ? nombreArchivo.toLowerCase(Locale.ROOT) : "";
+        long inicio = System.nanoTime();
+        Importacion importacion = new Importacion();
+        if (nombre.endsWith(".csv")) {
+            readCsv(in, importacion);
+        } else if (nombre.endsWith(".xlsx")) {
+            readXlsx(in, importacion);
+        } else {
+            throw new IllegalArgumentException("Formato no soportado: use un archivo .csv o .xlsx");
+        }
+        importacion.flush();
+        if (importacion.guardadas > 0) {
+            institucionCatalog.refresh();
+        }
+        long millis = (System.nanoTime() - inicio) / 1_000_000;
+        log.info("Importación de instituciones: {} filas, {} guardadas, {} errores en {} ms",
+                importacion.filasLeidas, importacion.guardadas, importacion.totalErrores, millis);
+        return new ImportResult(importacion.filasLeidas, importacion.guardadas, importacion.errores,
+                importacion.totalErrores, millis);
+    }
+
+    /** Estado de una importación: columnas, ids vistos y el lote pendiente de guardar. */
+    private final class Importacion implements RowHandler {
+
+        private Map<String, Integer> columnas;
+        private final Set<Long> ids = new HashSet<>();
+        private final List<Institucion> lote = new ArrayList<>();
+        private final List<Integer> filasLote = new ArrayList<>();
+        private final List<ErrorFila> errores = new ArrayList<>();
+        private int filasLeidas;
+        private int guardadas;
+        private int totalErrores;
+
+        @Override
+        public void row(int numero, List<String> celdas) {
+            if (celdas.stream().allMatch(c -> c == null || c.isBlank())) {
+                return;
+            }
+            if (columnas == null) {
+                columnas = leerEncabezados(celdas);
+                return;
+            }
+            filasLeidas++;
+            Institucion inst = new Institucion();
+            String error = validar(celdas, inst);
+            if (error == null && !ids.add(inst.getId())) {
+                error = "El id " + inst.getId() + " está repetido en el archivo";
+            }
+            if (error != null) {
+                error(numero, error);
+                return;
+            }
+            lote.add(inst);
+            filasLote.add(numero);
+            if (lote.size() >= tamanoLote) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (columnas == null) {
+                throw new IllegalArgumentException("El archivo está vacío");
+            }
+            if (lote.isEmpty()) {
+                return;
+            }
+            try {
+                // Las instituciones y sus versiones de datos se publican juntas, con una versión por lote
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(UPSERT, lote, lote.size(), InstitucionImportService::bind);
+                    reportDataVersion.bump(lote.stream().map(Institucion::getId).toList());
+                });
+                lote.forEach(this::guardada);
+            } catch (DataAccessException e) {
+                // Se reintenta fila a fila para saber cuál falló
+                for (int i = 0; i < lote.size(); i++) {
+                    Institucion inst = lote.get(i);
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> {
+                            jdbcTemplate.update(UPSERT, ps -> bind(ps, inst));
+                            reportDataVersion.bump(inst.getId());
+                        });
+                        guardada(inst);
+                    } catch (DataAccessException rowError) {
+                        error(filasLote.get(i), "No se pudo guardar: " + rowError.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+            lote.clear();
+            filasLote.clear();
+        }
+
+        private void guardada(Institucion inst) {
+            guardadas++;
+            if (inst.getCapacidadFranja() != null) {
+                slotCapacityService.actualizarCapacidad(inst);
+            } else {
+                // La fila no traía capacidad: se conservó la de la base de datos
+                slotCapacityService.recargarCapacidad(inst.getId());
+            }
+        }
+
+        private void error(int fila, String mensaje) {
+            totalErrores++;
+            if (errores.size() < MAX_ERRORES) {
+                errores.add(new ErrorFila(fila, mensaje));
+            }
+        }
+
+        private String validar(List<String> celdas, Institucion inst) {
+            String id = celda(celdas, "id");
+            if (id == null) {
+                return "Falta el id";
+            }
+            try {
+                inst.setId(Long.parseLong(id.endsWith(".0") ? id.substring(0, id.length() - 2) : id));
+            } catch (NumberFormatException e) {
+                return "Id no válido: " + id;
+            }
+            if (inst.getId() <= 0) {
+                return "Id no válido: " + id;
+            }
+            inst.setNombre(celda(celdas, "nombre"));
+            inst.setLocalidad(celda(celdas, "localidad"));
+            inst.setDireccionPrincipal(celda(celdas, "direccion_principal"));
+            inst.setCorreo(celda(celdas, "correo"));
+            inst.setTelefono(celda(celdas, "telefono"));
+            if (inst.getNombre() == null) {
+                return "Falta el nombre";
+            }
+            if (inst.getLocalidad() == null) {
+                return "Falta la localidad";
+            }
+            if (inst.getCorreo() != null && !CORREO.matcher(inst.getCorreo()).matches()) {
+                return "Correo no válido: " + inst.getCorreo();
+            }
+            for (String valor : new String[] { inst.getNombre(), inst.getLocalidad(), inst.getDireccionPrincipal(),
+                    inst.getCorreo(), inst.getTelefono() }) {
+                if (valor != null && valor.length() > MAX_LONGITUD) {
+                    return "Un valor supera los " + MAX_LONGITUD + " caracteres";
+                }
+            }
+            String capacidad = celda(celdas, "capacidad_franja");
+            if (capacidad != null) {
+                try {
+                    int c = Integer.parseInt(capacidad.endsWith(".0") ? capacidad.substring(0, capacidad.length() - 2) : capacidad);
+                    if (c <= 0) {
+                        return "La capacidad por franja debe ser mayor que cero";
+                    }
+                    inst.setCapacidadFranja(c);
+                } catch (NumberFormatException e) {
+                    return "Capacidad por franja no válida: " + capacidad;
+                }
+            }
+            return null;
+        }
+
+        private String celda(List<String> celdas, String columna) {
+            Integer i = columnas.get(columna);
+            if (i == null || i >= celdas.size() || celdas.get(i) == null) {
+                return null;
+            }
+            String valor = celdas.get(i).trim();
+            return valor.isEmpty() ? null : valor;
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Institucion inst) throws SQLException {
+        ps.setLong(1, inst.getId());
+        ps.setString(2, inst.getNombre());
+        ps.setString(3, inst.getLocalidad());
+        ps.setString(4, inst.getDireccionPrincipal());
+        ps.setString(5, inst.getCorreo());
+        ps.setString(6, inst.getTelefono());
+        if (inst.getCapacidadFranja() != null) {
+            ps.setInt(7, inst.getCapacidadFranja());
+        } else {
+            ps.setNull(7, Types.INTEGER);
+        }
+    }
+
+    /** Posición de cada columna conocida; acepta mayúsculas, tildes y algunos sinónimos. */
+    private static Map<String, Integer> leerEncabezados(List<String> celdas) {
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < celdas.size(); i++) {
+            String c = celdas.get(i);
+            if (c == null) continue;
+            String clave = Normalizer.normalize(c.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}", "")
+                    .replaceAll("[\\s-]+", "_");
+            String columna = switch (clave) {
+                case "id", "id_colegio" -> "id";
+                case "direccion", "direccion_principal" -> "direccion_principal";
+                case "capacidad", "capacidad_franja" -> "capacidad_franja";
+                default -> clave;
+            };
+            columnas.putIfAbsent(columna, i);
+        }
+        for (String obligatoria : List.of("id", "nombre", "localidad")) {
+            if (!columnas.containsKey(obligatoria)) {
+                throw new IllegalArgumentException("Falta la columna obligatoria '" + obligatoria + "'");
+            }
+        }
+        return columnas;
+    }
+
+    /**
+     * Lee un CSV (RFC 4180) separado por comas o, si el encabezado no tiene comas, por
+     * punto y coma, como lo exporta Excel en español. Las filas se numeran por registro,
+     * así un salto de línea dentro de comillas no desplaza la numeración.
+     */
+    static void readCsv(InputStream in, RowHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        reader.mark(64 * 1024);
+        String encabezado = reader.readLine();
+        if (encabezado == null) {
+            return;
+        }
+        char separador = encabezado.indexOf(',') < 0 && encabezado.indexOf(';') >= 0 ? ';' : ',';
+        reader.reset();
+        int numero = 1;
+        List<String> celdas;
+        while ((celdas = nextRecord(reader, separador)) != null) {
+            handler.row(numero++, celdas);
+        }
+    }
+
+    private static List<String> nextRecord(BufferedReader reader, char separador) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> celdas = new ArrayList<>();
+        StringBuilder celda = new StringBuilder();
+        boolean comillas = false;
+        for (; c != -1; c = reader.read()) {
+            char ch = (char) c;
+            if (comillas) {
+                if (ch != '"') {
+                    celda.append(ch);
+                    continue;
+                }
+                // "" dentro de comillas es una comilla literal; otra cosa cierra las comillas
+                reader.mark(1);
+                if (reader.read() == '"') {
+                    celda.append('"');
+                } else {
+                    reader.reset();
+                    comillas = false;
+                }
+            } else if (ch == '"' && celda.isEmpty()) {
+                comillas = true;
+            } else if (ch == separador) {
+                celdas.add(celda.toString());
+                celda.setLength(0);
+            } else if (ch == '\n') {
+                break;
+            } else if (ch != '\r') {
+                celda.append(ch);
+            }
+        }
+        celdas.add(celda.toString());
+        return celdas;
+    }
+
+    /** Lee la primera hoja de un XLSX con la API de eventos (SAX) de POI. */
+    static void readXlsx(InputStream in, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(in)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, strings,
+                        new XSSFSheetXMLHandler.SheetContentsHandler() {
+                            private final List<String> celdas = new ArrayList<>();
+
+                            @Override
+                            public void startRow(int rowNum) {
+                                celdas.clear();
+                            }
+
+                            @Override
+                            public void endRow(int rowNum) {
+                                handler.row(rowNum + 1, List.copyOf(celdas));
+                            }
+
+                            @Override
+                            public void cell(String ref, String value, XSSFComment comment) {
+                                int col = new CellReference(ref).getCol();
+                                while (celdas.size() < col) {
+                                    celdas.add("");
+                                }
+                                celdas.add(value != null ? value : "");
+                            }
+                        }, new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("No se pudo leer el archivo XLSX", e);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.colegiosapp.service;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.repository.CitaOcupacion;
+import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.InstitucionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Controla el cupo de cada franja horaria por institución y sede. La ocupación se
+ * guarda en la tabla {@code franja_ocupacion} (una fila por franja con citas) y cada
+ * reserva es un UPDATE condicionado a que la franja no supere la capacidad de la
+ * institución, leída en la misma sentencia. Así el cupo se respeta aunque varias
+ * instancias reserven a la vez. Las reservas, movimientos y liberaciones van en la
+ * transacción que guarda la cita: si esta falla, el cupo vuelve con el rollback.
+ *
+ * <p>Las franjas van de {@code citas.franjas.inicio} a {@code citas.franjas.fin}
+ * (hora de la última franja) cada {@code citas.franjas.duracion}, de lunes a viernes.
+ * Solo se reservan franjas que aún no han empezado y hasta {@code citas.reserva.dias-maximo}
+ * días adelante. La capacidad es la de la institución o {@code citas.capacidad.por-franja}.
+ *
+ * <p>Las transacciones bloquean siempre las filas de citas antes que las de franja,
+ * para no bloquearse entre sí. {@link #reconciliar()} recalcula la ocupación desde
+ * {@code citas} al arrancar y cada {@code citas.franjas.purga-cron}, cuando además se
+ * borran las franjas pasadas.
+ */
+@Service
+public class SlotCapacityService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotCapacityService.class);
+
+    /** Sede usada mientras las instituciones no tengan sedes registradas. */
+    public static final int SEDE_PRINCIPAL = 1;
+
+    private static final String CLAVE = "id_colegio = ? AND id_sede = ? AND fecha = ? AND hora = ?";
+
+    private static final String RESERVAR = "UPDATE franja_ocupacion SET ocupados = ocupados + ? WHERE " + CLAVE
+            + " AND ocupados + ? <= COALESCE((SELECT capacidad_franja FROM instituciones "
+            + "WHERE id_colegio = ? AND capacidad_franja > 0), ?)";
+
+    private static final String CREAR = "INSERT INTO franja_ocupacion (id_colegio, id_sede, fecha, hora, ocupados) "
+            + "VALUES (?, ?, ?, ?, 0) ON DUPLICATE KEY UPDATE ocupados = ocupados";
+
+    private static final String LIBERAR = "UPDATE franja_ocupacion SET ocupados = GREATEST(ocupados - ?, 0) WHERE " + CLAVE;
+
+    private static final String OCUPAR = "UPDATE franja_ocupacion SET ocupados = ocupados + ? WHERE " + CLAVE;
+
+    /** Cupo de una franja en un día concreto. */
+    public record Disponibilidad(LocalDate fecha, LocalTime hora, int capacidad, int ocupados) {
+        public int getDisponibles() {
+            return Math.max(0, capacidad - ocupados);
+        }
+    }
+
+    /** Fila de {@code franja_ocupacion}: la hora es la de inicio de la franja. */
+    private record Franja(long institucionId, int sede, LocalDate fecha, LocalTime hora) implements Comparable<Franja> {
+        @Override
+        public int compareTo(Franja o) {
+            int c = Long.compare(institucionId, o.institucionId);
+            if (c == 0) c = Integer.compare(sede, o.sede);
+            if (c == 0) c = fecha.compareTo(o.fecha);
+            return c != 0 ? c : hora.compareTo(o.hora);
+        }
+    }
+
+    // Solo para mostrar la disponibilidad; las reservas leen la capacidad de la base de datos
+    private final Map<Long, Integer> capacidades = new ConcurrentHashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CitaRepository citaRepository;
+    private final InstitucionRepository institucionRepository;
+    private final MeterRegistry meterRegistry;
+    private final LocalTime inicio;
+    private final LocalTime fin;
+    private final int minutosFranja;
+    private final int franjasPorDia;
+    private final int capacidadPorDefecto;
+    private final int diasMaximo;
+
+    public SlotCapacityService(JdbcTemplate jdbcTemplate,
+                            CitaRepository citaRepository,
+                            InstitucionRepository institucionRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${citas.franjas.inicio:07:00}") String inicio,
+                            @Value("${citas.franjas.fin:15:00}") String fin,
+                            @Value("${citas.franjas.duracion:PT15M}") Duration duracion,
+                            @Value("${citas.capacidad.por-franja:20}") int capacidadPorDefecto,
+                            @Value("${citas.reserva.dias-maximo:90}") int diasMaximo) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.citaRepository = citaRepository;
+        this.institucionRepository = institucionRepository;
+        this.meterRegistry = meterRegistry;
+        this.inicio = LocalTime.parse(inicio);
+        this.fin = LocalTime.parse(fin);
+        this.minutosFranja = (int) duracion.toMinutes();
+        this.franjasPorDia = (int) (Duration.between(this.inicio, this.fin).toMinutes() / minutosFranja) + 1;
+        this.capacidadPorDefecto = capacidadPorDefecto;
+        this.diasMaximo = diasMaximo;
+    }
+
+    /** Actualiza la capacidad mostrada tras registrar o modificar una institución. */
+    public void actualizarCapacidad(Institucion institucion) {
+        capacidades.put(institucion.getId(), capacidadDe(institucion));
+    }
+
+    /** Vuelve a leer de la base de datos la capacidad mostrada de la institución. */
+    public void recargarCapacidad(Long institucionId) {
+        capacidades.remove(institucionId);
+    }
+
+    /** Indica si la franja admite reservas y tiene cupo para {@code personas}, sin reservarlo. */
+    public boolean isDisponible(Long institucionId, Integer sede, LocalDate fecha, LocalTime hora, Integer personas) {
+        Franja franja = franjaReservable(institucionId, sede, fecha, hora);
+        if (franja == null) {
+            return false;
+        }
+        Integer ocupados = jdbcTemplate.query("SELECT ocupados FROM franja_ocupacion WHERE " + CLAVE,
+                rs -> rs.next() ? rs.getInt(1) : 0, franja.institucionId(), franja.sede(), franja.fecha(), franja.hora());
+        return ocupados + personas(personas) <= capacidad(institucionId);
+    }
+
+    /**
+     * Reserva el cupo dentro de la transacción de la cita.
+     * @return false si la franja ya empezó, está fuera del horario o del plazo de reserva,
+     *         o no tiene cupo.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryReserve(Long institucionId, Integer sede, LocalDate fecha, LocalTime hora, Integer personas) {
+        Franja franja = franjaReservable(institucionId, sede, fecha, hora);
+        return franja != null && reservar(franja, personas(personas));
+    }
+
+    /** Devuelve el cupo de una cita cancelada o movida. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Long institucionId, Integer sede, LocalDate fecha, LocalTime hora, Integer personas) {
+        Franja franja = franjaDe(institucionId, sede, fecha, hora);
+        if (franja != null) {
+            actualizar(LIBERAR, franja, personas(personas));
+        }
+    }
+
+    /**
+     * Mueve una cita a otra franja: reserva la nueva y libera la anterior. Si ambas
+     * horas caen en la misma franja no cambia la ocupación. Las dos filas se actualizan
+     * en orden de clave, así dos movimientos cruzados no se bloquean entre sí.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryMove(Long institucionId, Integer sede, LocalDate fechaAnterior, LocalTime horaAnterior,
+                        LocalDate fecha, LocalTime hora, Integer personas) {
+        Franja nueva = franjaReservable(institucionId, sede, fecha, hora);
+        if (nueva == null) {
+            return false;
+        }
+        Franja anterior = franjaDe(institucionId, sede, fechaAnterior, horaAnterior);
+        if (nueva.equals(anterior)) {
+            return true;
+        }
+        int n = personas(personas);
+        if (anterior == null) {
+            return reservar(nueva, n);
+        }
+        if (anterior.compareTo(nueva) < 0) {
+            actualizar(LIBERAR, anterior, n);
+            if (!reservar(nueva, n)) {
+                actualizar(OCUPAR, anterior, n);
+                return false;
+            }
+            return true;
+        }
+        if (!reservar(nueva, n)) {
+            return false;
+        }
+        actualizar(LIBERAR, anterior, n);
+        return true;
+    }
+
+    /** Cupo de cada franja en los días hábiles del rango {@code [desde, desde + dias)}. */
+    public List<Disponibilidad> disponibilidad(Long institucionId, Integer sede, LocalDate desde, int dias) {
+        int capacidad = capacidad(institucionId);
+        int s = sede != null ? sede : SEDE_PRINCIPAL;
+        Map<LocalDateTime, Integer> ocupacion = new HashMap<>();
+        jdbcTemplate.query("SELECT fecha, hora, ocupados FROM franja_ocupacion "
+                + "WHERE id_colegio = ? AND id_sede = ? AND fecha >= ? AND fecha < ?",
+                rs -> { ocupacion.put(rs.getObject(1, LocalDate.class).atTime(rs.getObject(2, LocalTime.class)), rs.getInt(3)); },
+                institucionId, s, desde, desde.plusDays(dias));
+        List<Disponibilidad> result = new ArrayList<>();
+        for (LocalDate fecha = desde; fecha.isBefore(desde.plusDays(dias)); fecha = fecha.plusDays(1)) {
+            if (!esDiaHabil(fecha)) {
+                continue;
+            }
+            for (int i = 0; i < franjasPorDia; i++) {
+                LocalTime hora = inicio.plusMinutes((long) i * minutosFranja);
+                result.add(new Disponibilidad(fecha, hora, capacidad, ocupacion.getOrDefault(fecha.atTime(hora), 0)));
+            }
+        }
+        return result;
+    }
+
+    /** Borra las franjas de días pasados y corrige la ocupación de las demás. */
+    @Scheduled(cron = "${citas.franjas.purga-cron:0 0 2 * * *}")
+    @Transactional
+    public void purgarFranjasPasadas() {
+        jdbcTemplate.update("DELETE FROM franja_ocupacion WHERE fecha < ?", LocalDate.now());
+        reconciliar();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconciliarAlArrancar() {
+        reconciliar();
+    }
+
+    /**
+     * Recalcula desde {@code citas} la ocupación de las franjas de hoy en adelante y
+     * actualiza solo las filas que difieren. Las filas de franja se bloquean antes de
+     * leer las citas, así las reservas concurrentes esperan y no se pierden.
+     * @return número de filas corregidas.
+     */
+    @Transactional
+    public int reconciliar() {
+        LocalDate hoy = LocalDate.now();
+        Map<Franja, Integer> actuales = new HashMap<>();
+        jdbcTemplate.query("SELECT id_colegio, id_sede, fecha, hora, ocupados FROM franja_ocupacion WHERE fecha >= ? "
+                + "ORDER BY id_colegio, id_sede, fecha, hora FOR UPDATE",
+                rs -> {
+                    actuales.put(new Franja(rs.getLong(1), rs.getInt(2), rs.getObject(3, LocalDate.class),
+                            rs.getObject(4, LocalTime.class)), rs.getInt(5));
+                }, hoy);
+
+        SortedMap<Franja, Integer> reales = new TreeMap<>();
+        for (CitaOcupacion row : citaRepository.sumOcupacionDesde(hoy)) {
+            Franja franja = franjaDe(row.getInstitucionId(), row.getIdSede(), row.getFechaCita(), row.getHoraCita());
+            if (franja != null) {
+                reales.merge(franja, row.getPersonas().intValue(), Integer::sum);
+            }
+        }
+
+        int diferencias = 0;
+        for (Map.Entry<Franja, Integer> r : reales.entrySet()) {
+            Integer actual = actuales.remove(r.getKey());
+            if (!r.getValue().equals(actual)) {
+                Franja f = r.getKey();
+                jdbcTemplate.update("INSERT INTO franja_ocupacion (id_colegio, id_sede, fecha, hora, ocupados) "
+                        + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE ocupados = VALUES(ocupados)",
+                        f.institucionId(), f.sede(), f.fecha(), f.hora(), r.getValue());
+                diferencias++;
+            }
+        }
+        for (Map.Entry<Franja, Integer> sobrante : actuales.entrySet()) {
+            if (sobrante.getValue() != 0) {
+                Franja f = sobrante.getKey();
+                jdbcTemplate.update("UPDATE franja_ocupacion SET ocupados = 0 WHERE " + CLAVE,
+                        f.institucionId(), f.sede(), f.fecha(), f.hora());
+                diferencias++;
+            }
+        }
+
+        meterRegistry.counter("citas.franjas.diferencias").increment(diferencias);
+        if (diferencias > 0) {
+            log.warn("Ocupación de franjas reconciliada: {} filas corregidas", diferencias);
+        }
+        return diferencias;
+    }
+
+    /** Suma las personas a la franja si caben; crea la fila la primera vez que se reserva. */
+    private boolean reservar(Franja franja, int personas) {
+        if (reservarExistente(franja, personas)) {
+            return true;
+        }
+        jdbcTemplate.update(CREAR, franja.institucionId(), franja.sede(), franja.fecha(), franja.hora());
+        return reservarExistente(franja, personas);
+    }
+
+    private boolean reservarExistente(Franja franja, int personas) {
+        return jdbcTemplate.update(RESERVAR, personas, franja.institucionId(), franja.sede(), franja.fecha(),
+                franja.hora(), personas, franja.institucionId(), capacidadPorDefecto) == 1;
+    }
+
+    private void actualizar(String sql, Franja franja, int personas) {
+        jdbcTemplate.update(sql, personas, franja.institucionId(), franja.sede(), franja.fecha(), franja.hora());
+    }
+
+    /** Como {@link #franjaDe}, pero null si la franja ya empezó o pasa del plazo de reserva. */
+    private Franja franjaReservable(Long institucionId, Integer sede, LocalDate fecha, LocalTime hora) {
+        Franja franja = franjaDe(institucionId, sede, fecha, hora);
+        LocalDateTime ahora = LocalDateTime.now();
+        if (franja == null || franja.fecha().atTime(franja.hora()).isBefore(ahora)
+                || franja.fecha().isAfter(ahora.toLocalDate().plusDays(diasMaximo))) {
+            return null;
+        }
+        return franja;
+    }
+
+    /** Franja que contiene la hora indicada, o null si está fuera del horario de atención. */
+    private Franja franjaDe(Long institucionId, Integer sede, LocalDate fecha, LocalTime hora) {
+        if (institucionId == null || fecha == null || hora == null || !esDiaHabil(fecha)
+                || hora.isBefore(inicio) || hora.isAfter(fin)) {
+            return null;
+        }
+        int indice = (int) (Duration.between(inicio, hora).toMinutes() / minutosFranja);
+        return new Franja(institucionId, sede != null ? sede : SEDE_PRINCIPAL, fecha,
+                inicio.plusMinutes((long) indice * minutosFranja));
+    }
+
+    private int capacidad(Long institucionId) {
+        return capacidades.computeIfAbsent(institucionId, id -> institucionRepository.findById(id)
+                .map(this::capacidadDe)
+                .orElse(capacidadPorDefecto));
+    }
+
+    private int capacidadDe(Institucion inst) {
+        Integer c = inst.getCapacidadFranja();
+        return c != null && c > 0 ? c : capacidadPorDefecto;
+    }
+
+    private static int personas(Integer cantidad) {
+        return cantidad != null && cantidad > 0 ? cantidad : 1;
+    }
+
+    private static boolean esDiaHabil(LocalDate fecha) {
+        DayOfWeek d = fecha.getDayOfWeek();
+        return d != DayOfWeek.SATURDAY && d != DayOfWeek.SUNDAY;
+    }
+}
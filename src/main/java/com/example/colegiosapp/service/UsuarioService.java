@@ -6,7 +6,9 @@ import java.util.Optional;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -20,18 +22,21 @@ import com.example.colegiosapp.repository.UsuarioRepository;
 
 
 @Service
-public class UsuarioService implements UserDetailsService {
+public class UsuarioService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UsuarioRepository usuarioRepository;
     private final RolRepository rolRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserCache userCache;
 
     public UsuarioService(UsuarioRepository usuarioRepository,
                     RolRepository rolRepository,
-                    PasswordEncoder passwordEncoder) {
+                    PasswordEncoder passwordEncoder,
+                    UserCache userCache) {
         this.usuarioRepository = usuarioRepository;
         this.rolRepository = rolRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
     }
 
 
@@ -59,4 +64,24 @@ public class UsuarioService implements UserDetailsService {
         GrantedAuthority authority = new SimpleGrantedAuthority(usuario.getRol().getNombre());
         return new User(usuario.getCorreo(), usuario.getPassword(), Collections.singleton(authority));
     }
-}
\ No newline at end of file
+
+    /**
+     * Guarda el hash regenerado con el costo actual tras un login correcto. El
+     * proveedor de autenticación lo invoca cuando el hash guardado es más débil.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        usuarioRepository.findByCorreo(user.getUsername()).ifPresent(usuario -> {
+            usuario.setPassword(newPassword);
+            usuarioRepository.save(usuario);
+        });
+        userCache.removeUserFromCache(user.getUsername());
+        return User.withUserDetails(user).password(newPassword).build();
+    }
+
+    /** Descarta la copia en caché del usuario tras cambiar su rol o sus datos. */
+    public void evictFromCache(String correo) {
+        userCache.removeUserFromCache(correo);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.colegiosapp.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+
+/**
+ * Serializa los atributos de la sesión con la serialización de Java y comprime con
+ * Deflate los que superan el umbral (el contexto de seguridad y las peticiones
+ * guardadas suelen repetir nombres de clases y cabeceras). Los valores sin comprimir
+ * conservan la cabecera {@code AC ED} de Java, así se siguen leyendo los atributos
+ * guardados con el serializador por defecto de Spring Session.
+ */
+public class CompactSessionSerializer {
+
+    private static final int MAGIA_JAVA = 0xACED;
+
+    private final DefaultSerializer serializer = new DefaultSerializer();
+    private final DefaultDeserializer deserializer;
+    private final int umbral;
+
+    public CompactSessionSerializer(ClassLoader classLoader, int umbral) {
+        this.deserializer = new DefaultDeserializer(classLoader);
+        this.umbral = umbral;
+    }
+
+    public byte[] serializar(Object valor) {
+        try {
+            byte[] plano = serializer.serializeToByteArray(valor);
+            if (plano.length < umbral) {
+                return plano;
+            }
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream(plano.length / 2);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(comprimido, deflater)) {
+                out.write(plano);
+            } finally {
+                deflater.end();
+            }
+            return comprimido.size() < plano.length ? comprimido.toByteArray() : plano;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo serializar el atributo de sesión", e);
+        }
+    }
+
+    public Object deserializar(byte[] datos) {
+        try {
+            InputStream in = new ByteArrayInputStream(datos);
+            boolean plano = datos.length >= 2 && ((datos[0] & 0xFF) << 8 | (datos[1] & 0xFF)) == MAGIA_JAVA;
+            return deserializer.deserialize(plano ? in : new InflaterInputStream(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el atributo de sesión", e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.colegiosapp.session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+/**
+ * Envuelve el repositorio de sesiones para guardar solo las sesiones que cambiaron.
+ * Spring Session marca la sesión como modificada en cada petición al actualizar el
+ * último acceso; aquí ese cambio solo cuenta si pasó al menos {@code intervaloAcceso}
+ * desde el guardado, así las peticiones seguidas de un mismo tutor no escriben en la
+ * base de datos. A cambio, una sesión puede vencer hasta ese intervalo antes de tiempo.
+ */
+public class DirtyTrackingSessionRepository<S extends Session>
+        implements SessionRepository<DirtyTrackingSessionRepository.TrackedSession<S>> {
+
+    private final SessionRepository<S> delegate;
+    private final Duration intervaloAcceso;
+
+    public DirtyTrackingSessionRepository(SessionRepository<S> delegate, Duration intervaloAcceso) {
+        this.delegate = delegate;
+        this.intervaloAcceso = intervaloAcceso;
+    }
+
+    @Override
+    public TrackedSession<S> createSession() {
+        TrackedSession<S> session = new TrackedSession<>(delegate.createSession(), intervaloAcceso);
+        session.modificada = true;
+        return session;
+    }
+
+    @Override
+    public void save(TrackedSession<S> session) {
+        if (session.modificada) {
+            delegate.save(session.delegate);
+            session.modificada = false;
+        }
+    }
+
+    @Override
+    public TrackedSession<S> findById(String id) {
+        S session = delegate.findById(id);
+        return session != null ? new TrackedSession<>(session, intervaloAcceso) : null;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+    }
+
+    /** Sesión que recuerda si algo cambió desde que se leyó. */
+    public static final class TrackedSession<S extends Session> implements Session {
+
+        private final S delegate;
+        private final Duration intervaloAcceso;
+        private boolean modificada;
+
+        TrackedSession(S delegate, Duration intervaloAcceso) {
+            this.delegate = delegate;
+            this.intervaloAcceso = intervaloAcceso;
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            modificada = true;
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            modificada = true;
+            delegate.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            modificada = true;
+            delegate.removeAttribute(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            if (lastAccessedTime.isBefore(delegate.getLastAccessedTime().plus(intervaloAcceso))) {
+                return;
+            }
+            modificada = true;
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            modificada = true;
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
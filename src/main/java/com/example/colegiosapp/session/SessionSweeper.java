@@ -0,0 +1,69 @@
+package com.example.colegiosapp.session;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Borra las sesiones vencidas de {@code SPRING_SESSION} por lotes de
+ * {@code sesiones.jdbc.limpieza.lote} filas, cada uno en su propia transacción, en lugar
+ * del único DELETE de Spring Session que bloquea la tabla mientras borra todas las de
+ * golpe. Cada lote lee los ids de las más antiguas (limitando las filas con JDBC, sin
+ * {@code LIMIT} de MySQL) y las borra por id. Los atributos se borran en cascada.
+ */
+public class SessionSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionSweeper.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tabla;
+    private final String vencidas;
+    private final int lote;
+    private final Counter borradas;
+
+    public SessionSweeper(JdbcTemplate jdbcTemplate, String tabla, int lote, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tabla = tabla;
+        this.vencidas = "SELECT PRIMARY_ID FROM " + tabla + " WHERE EXPIRY_TIME < ? ORDER BY EXPIRY_TIME";
+        this.lote = lote;
+        this.borradas = meterRegistry.counter("sesiones.expiradas");
+    }
+
+    /** @return sesiones borradas. */
+    @Scheduled(fixedDelayString = "${sesiones.jdbc.limpieza.intervalo:PT1M}")
+    public int limpiar() {
+        long ahora = System.currentTimeMillis();
+        int total = 0;
+        List<String> ids;
+        do {
+            ids = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(vencidas);
+                ps.setLong(1, ahora);
+                ps.setMaxRows(lote);
+                return ps;
+            }, (rs, i) -> rs.getString(1));
+            if (!ids.isEmpty()) {
+                // Se vuelve a comprobar el vencimiento: la sesión pudo usarse entre la consulta y el borrado
+                List<Object> args = new ArrayList<>(ids);
+                args.add(ahora);
+                total += jdbcTemplate.update("DELETE FROM " + tabla + " WHERE PRIMARY_ID IN ("
+                        + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") AND EXPIRY_TIME < ?",
+                        args.toArray());
+            }
+        } while (ids.size() == lote);
+        if (total > 0) {
+            borradas.increment(total);
+            log.debug("{} sesiones vencidas borradas", total);
+        }
+        return total;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.colegiosapp.util;
 import java.io.ByteArrayOutputStream;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -13,8 +14,11 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Component;
 
 import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
 import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.repository.CitaEstadoCount;
 import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.CitaStatusCountRepository;
 import com.example.colegiosapp.repository.InstitucionRepository;
 import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
@@ -36,32 +40,59 @@ public class ReportGenerator {
 
     private final CitaRepository citaRepository;
     private final InstitucionRepository institucionRepository;
+    private final CitaStatusCountRepository statusCountRepository;
 
     public ReportGenerator(CitaRepository citaRepository,
-                    InstitucionRepository institucionRepository) {
+                    InstitucionRepository institucionRepository,
+                    CitaStatusCountRepository statusCountRepository) {
         this.citaRepository = citaRepository;
         this.institucionRepository = institucionRepository;
+        this.statusCountRepository = statusCountRepository;
     }
 
     /**
      * Computes a summary of appointment counts grouped by status for the
      * specified institution. If {@code institucionId} is null, the summary
-     * counts across all institutions are returned.
+     * counts across all institutions are returned. Counts are read from the
+     * maintained {@code cita_status_counts} table, one row per institution and
+     * status, so the cost does not grow with the number of citas.
      */
     public Map<String, Long> generateCitaStatusSummary(Long institucionId) {
-        Map<String, Long> summary = new HashMap<>();
-        List<String> estados = List.of("Pendiente asistir", "Reprogramada", "Cancelada", "Asistió");
-        for (String estado : estados) {
-            long count;
-            if (institucionId == null) {
-                count = citaRepository.findAll()
-                        .stream()
-                        .filter(c -> estado.equals(c.getEstado()))
-                        .count();
-            } else {
-                count = citaRepository.findByInstitucionIdAndEstado(institucionId, estado).size();
-            }
-            summary.put(estado, count);
+        List<CitaEstadoCount> counts = (institucionId == null)
+                ? statusCountRepository.findAllCounts()
+                : statusCountRepository.findCountsByInstitucion(institucionId);
+        Map<String, Long> summary = emptySummary();
+        for (CitaEstadoCount row : counts) {
+            summary.computeIfPresent(row.getEstado().getEtiqueta(), (k, v) -> v + row.getTotal());
+        }
+        return summary;
+    }
+
+    /**
+     * Computes the status summary of every institution from {@code cita_status_counts}.
+     * Institutions without appointments are absent from the map; use
+     * {@link #summaryFor(Map, Long)} to read an entry with zeroed defaults.
+     */
+    public Map<Long, Map<String, Long>> generateCitaStatusSummaryByInstitucion() {
+        Map<Long, Map<String, Long>> byInstitucion = new HashMap<>();
+        for (CitaEstadoCount row : statusCountRepository.findAllCounts()) {
+            if (row.getInstitucionId() == null) continue;
+            byInstitucion.computeIfAbsent(row.getInstitucionId(), k -> emptySummary())
+                    .computeIfPresent(row.getEstado().getEtiqueta(), (k, v) -> v + row.getTotal());
+        }
+        return byInstitucion;
+    }
+
+    /** Devuelve el resumen de la institución o uno con todos los estados en cero. */
+    public static Map<String, Long> summaryFor(Map<Long, Map<String, Long>> byInstitucion, Long institucionId) {
+        Map<String, Long> summary = byInstitucion.get(institucionId);
+        return summary != null ? summary : emptySummary();
+    }
+
+    private static Map<String, Long> emptySummary() {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        for (EstadoCita estado : EstadoCita.values()) {
+            summary.put(estado.getEtiqueta(), 0L);
         }
         return summary;
     }
@@ -75,12 +106,13 @@ public class ReportGenerator {
         if (institucionId != null) {
             Institucion institucion = institucionRepository.findById(institucionId).orElse(null);
             if (institucion != null) {
-                createSheetForInstitucion(workbook, institucion);
+                createSheetForInstitucion(workbook, institucion, generateCitaStatusSummary(institucionId));
             }
         } else {
             List<Institucion> instituciones = institucionRepository.findAll();
+            Map<Long, Map<String, Long>> summaries = generateCitaStatusSummaryByInstitucion();
             for (Institucion inst : instituciones) {
-                createSheetForInstitucion(workbook, inst);
+                createSheetForInstitucion(workbook, inst, summaryFor(summaries, inst.getId()));
             }
         }
         return workbook;
@@ -89,7 +121,7 @@ public class ReportGenerator {
     /**
      * Creates a sheet listing all appointments for the given institution plus a status summary.
      */
-    private void createSheetForInstitucion(Workbook workbook, Institucion institucion) {
+    private void createSheetForInstitucion(Workbook workbook, Institucion institucion, Map<String, Long> summary) {
         String sheetName = "Inst_" + institucion.getId();
         Sheet sheet = workbook.createSheet(sheetName);
         int rowNum = 0;
@@ -99,7 +131,6 @@ public class ReportGenerator {
         titleRow.createCell(0).setCellValue("Reporte de citas para " + institucion.getNombre());
 
         // Summary
-        Map<String, Long> summary = generateCitaStatusSummary(institucion.getId());
         for (Map.Entry<String, Long> entry : summary.entrySet()) {
             Row summaryRow = sheet.createRow(rowNum++);
             summaryRow.createCell(0).setCellValue(entry.getKey());
@@ -117,18 +148,16 @@ public class ReportGenerator {
 
         // Data rows
         List<Cita> citas = citaRepository.findByInstitucionId(institucion.getId());
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
         for (Cita c : citas) {
             Row row = sheet.createRow(rowNum++);
             row.createCell(0).setCellValue(c.getId());
-            row.createCell(1).setCellValue(c.getFechaCita() != null ? c.getFechaCita().format(dateFormatter) : "");
-            row.createCell(2).setCellValue(c.getHoraCita() != null ? c.getHoraCita().format(timeFormatter) : "");
+            row.createCell(1).setCellValue(c.getFechaCita() != null ? c.getFechaCita().format(DATE_FORMATTER) : "");
+            row.createCell(2).setCellValue(c.getHoraCita() != null ? c.getHoraCita().format(TIME_FORMATTER) : "");
             row.createCell(3).setCellValue(nullSafe(c.getNombreAgenda()));
             row.createCell(4).setCellValue(nullSafe(c.getCorreoAgenda()));
             row.createCell(5).setCellValue(nullSafe(c.getTelefonoAgenda()));
             row.createCell(6).setCellValue(c.getCantidadCitas());
-            row.createCell(7).setCellValue(nullSafe(c.getEstado()));
+            row.createCell(7).setCellValue(EstadoCita.etiquetaDe(c.getEstado()));
         }
 
         // Ajustar automáticamente el tamaño de las columnas
@@ -152,11 +181,13 @@ public class ReportGenerator {
 
             if (institucionId != null) {
                 Institucion inst = institucionRepository.findById(institucionId).orElse(null);
-                addInstitutionSection(doc, inst);
+                addInstitutionSection(doc, inst, generateCitaStatusSummary(institucionId));
             } else {
                 List<Institucion> instituciones = institucionRepository.findAll();
+                Map<Long, Map<String, Long>> summaries = generateCitaStatusSummaryByInstitucion();
                 for (int i = 0; i < instituciones.size(); i++) {
-                    addInstitutionSection(doc, instituciones.get(i));
+                    Institucion inst = instituciones.get(i);
+                    addInstitutionSection(doc, inst, summaryFor(summaries, inst.getId()));
                     if (i < instituciones.size() - 1) doc.newPage();
                 }
             }
@@ -172,15 +203,15 @@ public class ReportGenerator {
 
     // ---- ayudantes PDF ----
 
-    private void addInstitutionSection(Document doc, Institucion inst) throws DocumentException {
-        Font H1 = new Font(Font.HELVETICA, 16, Font.BOLD);
-        Font H2 = new Font(Font.HELVETICA, 12, Font.BOLD);
-        Font TH = new Font(Font.HELVETICA, 10, Font.BOLD);
-        Font TD = new Font(Font.HELVETICA, 10);
-
-        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        DateTimeFormatter tf = DateTimeFormatter.ofPattern("HH:mm");
+    // Fuentes y formateadores compartidos por todas las secciones
+    private static final Font H1 = new Font(Font.HELVETICA, 16, Font.BOLD);
+    private static final Font H2 = new Font(Font.HELVETICA, 12, Font.BOLD);
+    private static final Font TH = new Font(Font.HELVETICA, 10, Font.BOLD);
+    private static final Font TD = new Font(Font.HELVETICA, 10);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
 
+    private void addInstitutionSection(Document doc, Institucion inst, Map<String, Long> summary) throws DocumentException {
         if (inst == null) {
             doc.add(new Paragraph("Institución no encontrada.", H2));
             return;
@@ -190,7 +221,6 @@ public class ReportGenerator {
         doc.add(new Paragraph("Reporte de citas para " + nullSafe(inst.getNombre()), H1));
         doc.add(new Paragraph(" ", H2));
 
-        Map<String, Long> summary = generateCitaStatusSummary(inst.getId());
         PdfPTable sum = new PdfPTable(2);
         sum.setWidthPercentage(30);
         sum.setWidths(new float[]{70, 30});
@@ -218,13 +248,13 @@ public class ReportGenerator {
         List<Cita> citas = citaRepository.findByInstitucionId(inst.getId());
         for (Cita c : citas) {
             addCell(tbl, String.valueOf(c.getId()), TD);
-            addCell(tbl, c.getFechaCita() != null ? c.getFechaCita().format(df) : "-", TD);
-            addCell(tbl, c.getHoraCita() != null ? c.getHoraCita().format(tf) : "-", TD);
+            addCell(tbl, c.getFechaCita() != null ? c.getFechaCita().format(DATE_FORMATTER) : "-", TD);
+            addCell(tbl, c.getHoraCita() != null ? c.getHoraCita().format(TIME_FORMATTER) : "-", TD);
             addCell(tbl, nullSafe(c.getNombreAgenda()), TD);
             addCell(tbl, nullSafe(c.getCorreoAgenda()), TD);
             addCell(tbl, nullSafe(c.getTelefonoAgenda()), TD);
             addCell(tbl, String.valueOf(c.getCantidadCitas()), TD);
-            addCell(tbl, nullSafe(c.getEstado()), TD);
+            addCell(tbl, EstadoCita.etiquetaDe(c.getEstado()), TD);
         }
 
         doc.add(tbl);
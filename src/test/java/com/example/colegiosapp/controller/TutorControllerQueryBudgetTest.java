@@ -0,0 +1,99 @@
+package com.example.colegiosapp.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.example.colegiosapp.datasource.QueryStats;
+import com.example.colegiosapp.entity.Cita;
+import com.example.colegiosapp.entity.EstadoCita;
+import com.example.colegiosapp.entity.Institucion;
+import com.example.colegiosapp.entity.Usuario;
+import com.example.colegiosapp.repository.CitaRepository;
+import com.example.colegiosapp.repository.InstitucionRepository;
+import com.example.colegiosapp.repository.RolRepository;
+import com.example.colegiosapp.repository.UsuarioRepository;
+
+/**
+ * Presupuesto de consultas de las vistas del tutor: la lista de citas no debe crecer
+ * con el número de citas (N+1 sobre institución o usuario).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TutorControllerQueryBudgetTest {
+
+    private static final String CORREO = "tutor.presupuesto@colegios.test";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RolRepository rolRepository;
+
+    @Autowired
+    private InstitucionRepository institucionRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @BeforeEach
+    void crearCitas() {
+        if (usuarioRepository.findByCorreo(CORREO).isPresent()) {
+            return;
+        }
+        Usuario tutor = new Usuario();
+        tutor.setNombre("Tutor");
+        tutor.setCorreo(CORREO);
+        tutor.setRol(rolRepository.findByNombre("Tutor").orElseThrow());
+        usuarioRepository.save(tutor);
+
+        for (long id = 9001; id <= 9003; id++) {
+            Institucion institucion = new Institucion();
+            institucion.setId(id);
+            institucion.setNombre("Colegio " + id);
+            institucionRepository.save(institucion);
+            for (int i = 0; i < 5; i++) {
+                Cita cita = new Cita();
+                cita.setInstitucion(institucion);
+                cita.setUsuario(tutor);
+                cita.setIdSede(1);
+                cita.setFechaCita(LocalDate.now().plusDays(i + 1));
+                cita.setHoraCita(LocalTime.of(8, 0));
+                cita.setCantidadCitas(1);
+                cita.setNombreAgenda("Tutor");
+                cita.setCorreoAgenda(CORREO);
+                cita.setEstado(EstadoCita.PENDIENTE_ASISTIR);
+                citaRepository.save(cita);
+            }
+        }
+    }
+
+    @Test
+    void listaDeCitasUsaComoMaximoDosSentencias() throws Exception {
+        MvcResult result = mockMvc.perform(get("/tutor/citas").with(user(CORREO).authorities(() -> "Tutor")))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("citas", hasSize(15)))
+                .andReturn();
+
+        assertThat(QueryStats.from(result.getRequest()).getStatements()).isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.colegiosapp.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Enrutamiento entre primaria y réplica con dos bases H2 en memoria. Cada una tiene una
+ * tabla {@code origen} con su nombre; la "replicación" del latido se simula escribiendo
+ * directamente en la réplica.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration RETRASO_MAXIMO = Duration.ofSeconds(5);
+
+    private JdbcTemplate primaria;
+    private JdbcTemplate replica;
+    private JdbcTemplate routing;
+    private ReplicaLagMonitor monitor;
+    private TransactionTemplate lectura;
+    private TransactionTemplate escritura;
+
+    @BeforeEach
+    void crearBases() {
+        DriverManagerDataSource primariaDs = new DriverManagerDataSource("jdbc:h2:mem:primaria;DB_CLOSE_DELAY=-1", "sa", "");
+        DriverManagerDataSource replicaDs = new DriverManagerDataSource("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", "sa", "");
+        primaria = new JdbcTemplate(primariaDs);
+        replica = new JdbcTemplate(replicaDs);
+        primaria.execute("CREATE TABLE origen (nombre VARCHAR(20))");
+        primaria.update("INSERT INTO origen VALUES ('primaria')");
+        replica.execute("CREATE TABLE origen (nombre VARCHAR(20))");
+        replica.update("INSERT INTO origen VALUES ('replica')");
+        replica.execute("CREATE TABLE replica_heartbeat (id INT PRIMARY KEY, marca BIGINT NOT NULL)");
+        replica.update("INSERT INTO replica_heartbeat (id, marca) VALUES (1, ?)", System.currentTimeMillis());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReplicaRoutingDataSource routingDs = new ReplicaRoutingDataSource(primariaDs,
+                List.of(new ReplicaRoutingDataSource.Replica("replica-1", replicaDs)), registry);
+        routing = new JdbcTemplate(routingDs);
+        monitor = new ReplicaLagMonitor(routingDs, RETRASO_MAXIMO, registry);
+        monitor.medir();
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routingDs);
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        escritura = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void borrarBases() {
+        monitor.close();
+        ReplicaRoutingDataSource.usarPrimaria(false);
+        primaria.execute("DROP ALL OBJECTS");
+        replica.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void transaccionDeSoloLecturaVaALaReplica() {
+        assertThat(origenEn(lectura)).isEqualTo("replica");
+    }
+
+    @Test
+    void escriturasVanALaPrimaria() {
+        String origen = escritura.execute(status -> {
+            routing.update("UPDATE origen SET nombre = nombre");
+            return origen();
+        });
+        assertThat(origen).isEqualTo("primaria");
+        assertThat(origen()).isEqualTo("primaria");
+    }
+
+    @Test
+    void peticionFijadaEnLaPrimariaLeeDeLaPrimaria() {
+        ReplicaRoutingDataSource.usarPrimaria(true);
+        assertThat(origenEn(lectura)).isEqualTo("primaria");
+    }
+
+    @Test
+    void replicaAtrasadaDejaDeRecibirLecturas() {
+        replica.update("UPDATE replica_heartbeat SET marca = ?",
+                System.currentTimeMillis() - RETRASO_MAXIMO.multipliedBy(2).toMillis());
+        monitor.medir();
+        assertThat(origenEn(lectura)).isEqualTo("primaria");
+
+        replica.update("UPDATE replica_heartbeat SET marca = ?", System.currentTimeMillis());
+        monitor.medir();
+        assertThat(origenEn(lectura)).isEqualTo("replica");
+    }
+
+    @Test
+    void latidoEnSuHiloDetectaElRetrasoSinLlamarloAMano() throws InterruptedException {
+        replica.update("UPDATE replica_heartbeat SET marca = ?",
+                System.currentTimeMillis() - RETRASO_MAXIMO.multipliedBy(2).toMillis());
+        monitor.iniciar(Duration.ofMillis(50));
+
+        long limite = System.currentTimeMillis() + 5000;
+        while (!"primaria".equals(origenEn(lectura)) && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertThat(origenEn(lectura)).isEqualTo("primaria");
+    }
+
+    @Test
+    void latidoCreaLaFilaUnaSolaVez() {
+        monitor.medir();
+        assertThat(primaria.queryForObject("SELECT COUNT(*) FROM replica_heartbeat", Integer.class)).isEqualTo(1);
+    }
+
+    private String origenEn(TransactionTemplate transaccion) {
+        return transaccion.execute(status -> origen());
+    }
+
+    private String origen() {
+        return routing.queryForObject("SELECT nombre FROM origen", String.class);
+    }
+}
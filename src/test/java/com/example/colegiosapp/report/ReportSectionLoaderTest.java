@@ -0,0 +1,89 @@
+package com.example.colegiosapp.report;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import com.example.colegiosapp.entity.Institucion;
+
+/**
+ * Lectura en paralelo de las secciones: cancelar una sección cuya cola está llena no
+ * debe dejar ocupado el hilo del pool.
+ */
+class ReportSectionLoaderTest {
+
+    private ReportSectionLoader loader;
+
+    @BeforeEach
+    void crearLoader() {
+        // Un solo hilo: si una sección cancelada lo retiene, el siguiente reporte no avanza
+        loader = new ReportSectionLoader(true, 1, false, null, new SinTransacciones());
+    }
+
+    @AfterEach
+    void cerrar() {
+        loader.shutdown();
+    }
+
+    @Test
+    void seccionCanceladaConLaColaLlenaLiberaElHilo() {
+        List<Institucion> instituciones = List.of(institucion(1L), institucion(2L));
+
+        // La primera sección no termina nunca; el escritor aborta tras leer una fila
+        assertThatThrownBy(() -> loader.<Integer>forEachInOrder(instituciones,
+                inst -> Stream.iterate(0, i -> i + 1),
+                (index, inst, rows) -> {
+                    rows.next();
+                    // Tiempo para que la sección llene su cola y quede esperando al escritor
+                    Thread.sleep(500);
+                    throw new IllegalStateException("cliente desconectado");
+                }))
+                .hasMessage("cliente desconectado");
+
+        List<Integer> leidas = new ArrayList<>();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> loader.<Integer>forEachInOrder(instituciones,
+                inst -> IntStream.range(0, ReportSectionLoader.CHUNK_ROWS * 3).boxed(),
+                (index, inst, rows) -> rows.forEachRemaining(leidas::add)));
+        assertThat(leidas).hasSize(ReportSectionLoader.CHUNK_ROWS * 3 * 2);
+    }
+
+    private static Institucion institucion(Long id) {
+        Institucion institucion = new Institucion();
+        institucion.setId(id);
+        return institucion;
+    }
+
+    /** Transacciones vacías: las secciones de la prueba no usan la base de datos. */
+    private static final class SinTransacciones extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
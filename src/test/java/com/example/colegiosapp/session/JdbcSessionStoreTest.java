@@ -0,0 +1,133 @@
+package com.example.colegiosapp.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.colegiosapp.config.JdbcSessionConfig;
+import com.example.colegiosapp.datasource.QueryCountingDataSource;
+import com.example.colegiosapp.datasource.QueryStats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Sesiones en la base de datos sobre H2 con el esquema de Spring Session: atributos
+ * comprimidos, sesiones sin cambios que no se escriben y limpieza por lotes.
+ */
+class JdbcSessionStoreTest {
+
+    private static final String ATRIBUTOS = "SELECT ATTRIBUTE_BYTES FROM SPRING_SESSION_ATTRIBUTES "
+            + "WHERE SESSION_PRIMARY_ID = (SELECT PRIMARY_ID FROM SPRING_SESSION WHERE SESSION_ID = ?) "
+            + "AND ATTRIBUTE_NAME = ?";
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private DirtyTrackingSessionRepository<Session> repository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void crearEsquema() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/session/jdbc/schema-h2.sql")
+                .build();
+        QueryCountingDataSource dataSource = new QueryCountingDataSource(database);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        JdbcIndexedSessionRepository jdbcRepository = new JdbcIndexedSessionRepository(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        jdbcRepository.setConversionService(new JdbcSessionConfig().springSessionConversionService(512));
+        // JdbcSession no es pública
+        repository = new DirtyTrackingSessionRepository<>((SessionRepository<Session>) (SessionRepository<?>) jdbcRepository,
+                Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void cerrar() {
+        QueryStats.stop();
+        database.shutdown();
+    }
+
+    @Test
+    void atributoGrandeSeGuardaComprimidoYSeLeeIgual() {
+        String valor = "ROLE_Tutor,".repeat(200);
+        var session = repository.createSession();
+        session.setAttribute("grande", valor);
+        repository.save(session);
+
+        byte[] guardado = jdbcTemplate.queryForObject(ATRIBUTOS, byte[].class, session.getId(), "grande");
+        assertThat(guardado.length).isLessThan(valor.length());
+        assertThat(guardado[0] & 0xFF).isNotEqualTo(0xAC);
+        assertThat((String) repository.findById(session.getId()).getAttribute("grande")).isEqualTo(valor);
+    }
+
+    @Test
+    void atributoGuardadoConElSerializadorAnteriorSigueLeyendose() throws Exception {
+        var session = repository.createSession();
+        session.setAttribute("antiguo", "nuevo");
+        repository.save(session);
+        byte[] java = new DefaultSerializer().serializeToByteArray("valor antiguo");
+        jdbcTemplate.update("UPDATE SPRING_SESSION_ATTRIBUTES SET ATTRIBUTE_BYTES = ? WHERE ATTRIBUTE_NAME = ?",
+                java, "antiguo");
+
+        assertThat((String) repository.findById(session.getId()).getAttribute("antiguo")).isEqualTo("valor antiguo");
+    }
+
+    @Test
+    void sesionSinCambiosNoSeEscribe() {
+        var session = repository.createSession();
+        session.setAttribute("usuario", "tutor@colegios.test");
+        repository.save(session);
+
+        QueryStats.start();
+        var leida = repository.findById(session.getId());
+        leida.setLastAccessedTime(Instant.now());
+        leida.getAttribute("usuario");
+        repository.save(leida);
+        QueryStats stats = QueryStats.stop();
+
+        // Solo la lectura de la sesión con sus atributos
+        assertThat(stats.getStatements()).isEqualTo(1);
+    }
+
+    @Test
+    void limpiezaBorraLasVencidasPorLotes() {
+        for (int i = 0; i < 7; i++) {
+            var session = repository.createSession();
+            session.setAttribute("n", i);
+            repository.save(session);
+        }
+        var vigente = repository.createSession();
+        repository.save(vigente);
+        jdbcTemplate.update("UPDATE SPRING_SESSION SET EXPIRY_TIME = ? WHERE SESSION_ID <> ?",
+                System.currentTimeMillis() - 1000, vigente.getId());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SessionSweeper sweeper = new SessionSweeper(jdbcTemplate, JdbcIndexedSessionRepository.DEFAULT_TABLE_NAME, 3, registry);
+        QueryStats.start();
+        int borradas = sweeper.limpiar();
+        QueryStats stats = QueryStats.stop();
+
+        assertThat(borradas).isEqualTo(7);
+        // Lotes de 3, 3 y 1: una consulta y un DELETE por lote
+        assertThat(stats.getStatements()).isEqualTo(6);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION_ATTRIBUTES", Integer.class)).isZero();
+        assertThat(registry.counter("sesiones.expiradas").count()).isEqualTo(7.0);
+    }
+}